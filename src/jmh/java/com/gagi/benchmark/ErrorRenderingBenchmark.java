@@ -0,0 +1,86 @@
+package com.gagi.benchmark;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gagi.controller.advice.CustomConstraintViolationHandler;
+import com.gagi.domain.User;
+
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Valid;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+
+/**
+ * Cost of turning the common failures into a response body: mapping the
+ * exception in {@link CustomConstraintViolationHandler} and writing the JSON. The
+ * exceptions are built once, so only the error path itself is measured; the
+ * 1000 violation case shows that the rendered size, and with it the cost, is
+ * capped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorRenderingBenchmark {
+
+	CustomConstraintViolationHandler handler = new CustomConstraintViolationHandler();
+	ObjectMapper objectMapper = new ObjectMapper();
+	ConstraintViolationException invalidUser;
+	ConstraintViolationException invalidBatch;
+	DataIntegrityViolationException duplicateEmail;
+
+	static class Batch {
+		@Valid
+		List<User> users = new ArrayList<>();
+	}
+
+	@Setup
+	public void setUp() {
+		Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+		invalidUser = new ConstraintViolationException(validator.validate(new User("", "not an email")));
+		Batch batch = new Batch();
+		for (int i = 0; i < 500; i++) {
+			batch.users.add(new User("", "invalid " + i));
+		}
+		invalidBatch = new ConstraintViolationException(validator.validate(batch));
+		String sql = "insert into app_users (email,name,search_name,version,id) values (?,?,?,?,?)";
+		duplicateEmail = new DataIntegrityViolationException("could not execute statement [" + sql + "]",
+				new org.hibernate.exception.ConstraintViolationException("could not execute statement",
+						new SQLException("Unique index or primary key violation", "23505"), sql,
+						"PUBLIC.\"Email must be unique_INDEX_8\""));
+	}
+
+	@Benchmark
+	public byte[] validationError() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(handler.handleException(invalidUser));
+	}
+
+	@Benchmark
+	public byte[] thousandViolations() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(handler.handleException(invalidBatch));
+	}
+
+	@Benchmark
+	public byte[] duplicateEmail() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(handler.handleException(duplicateEmail));
+	}
+}
@@ -0,0 +1,112 @@
+package com.gagi.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop HTTP load driver used to compare the platform thread and the
+ * virtual thread request execution modes. Unlike the JMH benchmarks next to it,
+ * it runs by hand against a started server. It seeds the server, then for
+ * every concurrency level keeps that many requests in flight against the
+ * blocking JPA read paths ({@code GET /users/{id}} and
+ * {@code GET /projects/{page}/{size}}) and prints one JSON line with
+ * throughput, latency percentiles and errors. All load comes from one client,
+ * so admission control has to be off on the server.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.arguments=--app.admission.enabled=false
+ * mvn -Pvirtual-threads spring-boot:run -Dspring-boot.run.arguments=--app.admission.enabled=false
+ * mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.gagi.benchmark.LoadBenchmark \
+ *     -Dexec.args="http://localhost:8080 50,200,800,2000 20000"
+ * </pre>
+ *
+ * The highest level that completes without errors is the maximum concurrency
+ * the mode sustains; compare its p99 between the two runs. A fourth argument of
+ * {@code /reactive} sends the same reads to the R2DBC endpoints instead, to
+ * compare them with the blocking controllers on the same server.
+ */
+public class LoadBenchmark {
+
+	private static final int SEED_USERS = 1000;
+	private static final int SEED_PROJECTS = 100;
+
+	public static void main(String[] args) throws Exception {
+		String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+		int[] levels = Arrays.stream((args.length > 1 ? args[1] : "50,200,800,2000").split(","))
+				.mapToInt(Integer::parseInt).toArray();
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		String prefix = args.length > 3 ? args[3] : "";
+
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		long[] userIds = seed(client, baseUrl);
+		for (int level : levels) {
+			run(client, baseUrl + prefix, userIds, level, requests);
+		}
+	}
+
+	private static long[] seed(HttpClient client, String baseUrl) throws Exception {
+		StringBuilder users = new StringBuilder(SEED_USERS * 64);
+		String run = Long.toString(System.nanoTime(), 36);
+		for (int i = 0; i < SEED_USERS; i++) {
+			users.append("{\"name\":\"user ").append(i).append("\",\"email\":\"user").append(i).append('.')
+					.append(run).append("@bench.local\"}\n");
+		}
+		String body = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/users/bulk"))
+				.header("Content-Type", "application/x-ndjson").POST(BodyPublishers.ofString(users.toString())).build(),
+				BodyHandlers.ofString()).body();
+		long[] ids = Arrays.stream(body.split("\"id\":")).skip(1)
+				.mapToLong(s -> Long.parseLong(s.substring(0, s.indexOf(',')))).toArray();
+		for (int i = 0; i < SEED_PROJECTS; i++) {
+			client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/projects"))
+					.header("Content-Type", "application/json")
+					.POST(BodyPublishers.ofString("{\"name\":\"project " + i + " " + run + "\",\"description\":\"benchmark\"}"))
+					.build(), BodyHandlers.discarding());
+		}
+		return ids;
+	}
+
+	private static void run(HttpClient client, String baseUrl, long[] userIds, int concurrency, int requests)
+			throws InterruptedException {
+		Semaphore inFlight = new Semaphore(concurrency);
+		long[] latencies = new long[requests];
+		AtomicInteger errors = new AtomicInteger();
+		CompletableFuture<?>[] calls = new CompletableFuture<?>[requests];
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			inFlight.acquire();
+			int index = i;
+			String path = i % 4 == 0 ? "/projects/" + ThreadLocalRandom.current().nextInt(5) + "/20"
+					: "/users/" + userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+			HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).build();
+			long sent = System.nanoTime();
+			calls[i] = client.sendAsync(request, BodyHandlers.discarding()).whenComplete((response, failure) -> {
+				latencies[index] = System.nanoTime() - sent;
+				if (failure != null || response.statusCode() >= 400) {
+					errors.incrementAndGet();
+				}
+				inFlight.release();
+			});
+		}
+		CompletableFuture.allOf(calls).exceptionally(e -> null).join();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Arrays.sort(latencies);
+		System.out.printf("{\"concurrency\":%d,\"requests\":%d,\"errors\":%d,\"throughput\":%.1f,"
+				+ "\"p50Ms\":%.2f,\"p99Ms\":%.2f,\"maxMs\":%.2f}%n", concurrency, requests, errors.get(),
+				requests / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99),
+				latencies[requests - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+	}
+}
@@ -0,0 +1,65 @@
+package com.gagi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gagi.controller.ProjectController;
+
+/**
+ * Assigning a user to a project that already has {@code members} members. Each
+ * invocation assigns a user that is not a member and removes it again, so the
+ * member list keeps its size for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectMembershipBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	int members;
+
+	SeededContext seeded;
+	ProjectController projectController;
+	Long projectId;
+	Long outsider;
+
+	@Setup(Level.Trial)
+	public void seed() {
+		seeded = SeededContext.start().withUsers(members + 1).withProjects(1, members);
+		projectController = seeded.bean(ProjectController.class);
+		projectId = seeded.projectIds.get(0);
+		outsider = seeded.userIds.get(members);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		seeded.close();
+	}
+
+	@Benchmark
+	public void assignAndRemove() {
+		projectController.assignUserToProject(projectId, outsider);
+		projectController.removeUserFromProject(projectId, outsider);
+	}
+
+	@Benchmark
+	public void assignExistingMember() {
+		projectController.assignUserToProject(projectId, seeded.userIds.get(0));
+	}
+}
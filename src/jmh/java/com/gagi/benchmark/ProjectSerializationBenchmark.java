@@ -0,0 +1,66 @@
+package com.gagi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+
+/**
+ * Serializing a {@link Project} with {@code users} members to JSON with the
+ * application's configured {@code ObjectMapper}. The project is built in memory
+ * so only Jackson's work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectSerializationBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	int users;
+
+	SeededContext seeded;
+	ObjectWriter writer;
+	Project project;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		seeded = SeededContext.start();
+		writer = seeded.bean(ObjectMapper.class).writerFor(Project.class);
+		project = new Project(1L, "project", "serialized for benchmarks");
+		for (long i = 0; i < users; i++) {
+			User user = new User("user " + i, "user" + i + "@bench.local");
+			user.setId(i + 1);
+			project.getUsers().add(user);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		seeded.close();
+	}
+
+	@Benchmark
+	public byte[] writeProject() throws JsonProcessingException {
+		return writer.writeValueAsBytes(project);
+	}
+}
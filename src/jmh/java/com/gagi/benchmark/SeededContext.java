@@ -0,0 +1,89 @@
+package com.gagi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.gagi.OtigoxTaskApplication;
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+import com.gagi.repository.ProjectRepository;
+import com.gagi.repository.UserRepository;
+
+/**
+ * Starts the application without a web server on its own in-memory H2 database
+ * and seeds it with a dataset of the requested size. Benchmarks call the beans
+ * directly, so the numbers cover the repository, transaction and serialization
+ * work and not the HTTP stack.
+ */
+final class SeededContext implements AutoCloseable {
+
+	private static final int SEED_CHUNK = 1000;
+
+	final ConfigurableApplicationContext context;
+	final List<Long> userIds = new ArrayList<>();
+	final List<String> emails = new ArrayList<>();
+	final List<Long> projectIds = new ArrayList<>();
+
+	private SeededContext(ConfigurableApplicationContext context) {
+		this.context = context;
+	}
+
+	static SeededContext start() {
+		return new SeededContext(new SpringApplicationBuilder(OtigoxTaskApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+						"spring.main.banner-mode=off", "logging.level.root=warn")
+				.run());
+	}
+
+	<T> T bean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	/**
+	 * Inserts {@code count} users with unique emails, in chunks so that the
+	 * inserts go through JDBC batching.
+	 */
+	SeededContext withUsers(int count) {
+		UserRepository users = bean(UserRepository.class);
+		List<User> chunk = new ArrayList<>(SEED_CHUNK);
+		for (int i = 0; i < count; i++) {
+			chunk.add(new User("user " + i, "user" + i + "@bench.local"));
+			if (chunk.size() == SEED_CHUNK || i == count - 1) {
+				for (User saved : users.saveAll(chunk)) {
+					userIds.add(saved.getId());
+					emails.add(saved.getEmail());
+				}
+				chunk.clear();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Inserts {@code count} projects, each with the first {@code members} seeded
+	 * users as members.
+	 */
+	SeededContext withProjects(int count, int members) {
+		ProjectRepository projects = bean(ProjectRepository.class);
+		List<Long> memberIds = userIds.subList(0, Math.min(members, userIds.size()));
+		for (int i = 0; i < count; i++) {
+			Long id = projects.save(new Project("project " + i, "seeded for benchmarks")).getId();
+			for (int from = 0; from < memberIds.size(); from += SEED_CHUNK) {
+				projects.addMembers(id, memberIds.subList(from, Math.min(from + SEED_CHUNK, memberIds.size())));
+			}
+			projectIds.add(id);
+		}
+		return this;
+	}
+
+	@Override
+	public void close() {
+		context.close();
+	}
+}
@@ -0,0 +1,80 @@
+package com.gagi.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.gagi.domain.User;
+import com.gagi.repository.UserRepository;
+
+/**
+ * Lookup by email, name prefix search and paged listing of users against
+ * {@code users} seeded rows.
+ * The offset page is picked at random across the whole table, so deep pages are
+ * measured too; the keyset variant reads the same page size for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRepositoryBenchmark {
+
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "1000", "100000" })
+	int users;
+
+	SeededContext seeded;
+	UserRepository userRepository;
+
+	@Setup(Level.Trial)
+	public void seed() {
+		seeded = SeededContext.start().withUsers(users);
+		userRepository = seeded.bean(UserRepository.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		seeded.close();
+	}
+
+	@Benchmark
+	public User findByEmail() {
+		return userRepository.findByEmail(seeded.emails.get(ThreadLocalRandom.current().nextInt(users)));
+	}
+
+	@Benchmark
+	public List<User> searchByNamePrefix() {
+		return userRepository.findBySearchNameStartingWithOrderBySearchNameAscIdAsc(
+				"user " + ThreadLocalRandom.current().nextInt(users), PageRequest.ofSize(PAGE_SIZE));
+	}
+
+	@Benchmark
+	public Page<User> findAllPaged() {
+		return userRepository.findAll(PageRequest.of(ThreadLocalRandom.current().nextInt(users / PAGE_SIZE), PAGE_SIZE));
+	}
+
+	@Benchmark
+	public List<User> findPageAfterId() {
+		Long after = seeded.userIds.get(ThreadLocalRandom.current().nextInt(users - PAGE_SIZE));
+		return userRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.ofSize(PAGE_SIZE));
+	}
+}
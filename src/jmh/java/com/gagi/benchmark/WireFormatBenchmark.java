@@ -0,0 +1,97 @@
+package com.gagi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+
+/**
+ * Encoding and decoding a {@link Project} with {@code users} members in each
+ * wire format the controllers negotiate, with the mappers the application
+ * configured. The encoded size is reported as the {@code bytes} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	@Param({ "10", "1000" })
+	int users;
+
+	@Param({ "json", "cbor", "smile" })
+	String format;
+
+	SeededContext seeded;
+	ObjectWriter writer;
+	ObjectReader reader;
+	Project project;
+	byte[] encoded;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Size {
+		public long bytes;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		seeded = SeededContext.start();
+		// built like the converters in WebConfiguration
+		ObjectMapper mapper = switch (format) {
+			case "cbor" -> seeded.bean(Jackson2ObjectMapperBuilder.class).factory(new CBORFactory()).build();
+			case "smile" -> seeded.bean(Jackson2ObjectMapperBuilder.class).factory(new SmileFactory()).build();
+			default -> seeded.bean(ObjectMapper.class);
+		};
+		writer = mapper.writerFor(Project.class);
+		reader = mapper.readerFor(Project.class);
+		project = new Project(1L, "project", "serialized for benchmarks");
+		for (long i = 0; i < users; i++) {
+			User user = new User("user " + i, "user" + i + "@bench.local");
+			user.setId(i + 1);
+			project.getUsers().add(user);
+		}
+		encoded = writer.writeValueAsBytes(project);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		seeded.close();
+	}
+
+	@Benchmark
+	public byte[] encode(Size size) throws IOException {
+		byte[] bytes = writer.writeValueAsBytes(project);
+		size.bytes = bytes.length;
+		return bytes;
+	}
+
+	@Benchmark
+	public Project decode() throws IOException {
+		return reader.readValue(encoded);
+	}
+}
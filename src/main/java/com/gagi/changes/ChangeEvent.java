@@ -0,0 +1,22 @@
+package com.gagi.changes;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One entry of the change feed. {@code id} is the feed offset, increasing by
+ * one per event; {@code userId} is only set for membership changes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChangeEvent(long id, String type, String entity, Long entityId, Long userId) {
+
+	public static final String CREATE = "create";
+	public static final String UPDATE = "update";
+	public static final String DELETE = "delete";
+	public static final String ASSIGN = "assign";
+	public static final String REMOVE = "remove";
+	/**
+	 * Sent first when the requested offset is older than the buffer: the client
+	 * missed changes and has to reload what it shows.
+	 */
+	public static final String RESET = "reset";
+}
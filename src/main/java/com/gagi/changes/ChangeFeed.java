@@ -0,0 +1,98 @@
+package com.gagi.changes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Recent changes to users and projects, kept in a ring buffer of
+ * {@code app.changes.buffer-size} events, and pushed to subscribers as they
+ * happen. Publishing costs a queue offer per subscriber; writing to the
+ * connections happens on the subscribers' own threads. A subscriber that falls
+ * more than {@code app.changes.subscriber-buffer} events behind is
+ * disconnected and resumes from its last offset.
+ */
+@Service
+public class ChangeFeed {
+
+	private final ChangeEvent[] ring;
+	private final int subscriberBuffer;
+	private final List<FluxSink<ChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+	private long lastId;
+
+	public ChangeFeed(@Value("${app.changes.buffer-size:10000}") int bufferSize,
+			@Value("${app.changes.subscriber-buffer:1000}") int subscriberBuffer) {
+		this.ring = new ChangeEvent[bufferSize];
+		this.subscriberBuffer = subscriberBuffer;
+	}
+
+	/**
+	 * Publishes once the current transaction committed, or right away outside of
+	 * one, so rolled back writes are never announced.
+	 */
+	public void publishAfterCommit(String type, String entity, Long entityId, Long userId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					publish(type, entity, entityId, userId);
+				}
+			});
+		} else {
+			publish(type, entity, entityId, userId);
+		}
+	}
+
+	synchronized void publish(String type, String entity, Long entityId, Long userId) {
+		ChangeEvent event = new ChangeEvent(++lastId, type, entity, entityId, userId);
+		ring[(int) (event.id() % ring.length)] = event;
+		for (FluxSink<ChangeEvent> subscriber : subscribers) {
+			subscriber.next(event);
+		}
+	}
+
+	/**
+	 * The events after {@code lastEventId}, then live ones. Without an offset
+	 * only live events are sent. When the offset has already left the buffer, or
+	 * is ahead of it because the feed restarted since, a {@link ChangeEvent#RESET}
+	 * comes first.
+	 */
+	public Flux<ChangeEvent> subscribe(Long lastEventId) {
+		return Flux.<ChangeEvent>create(sink -> {
+			// replay and registration under the publishing lock, so no event is
+			// missed or sent twice in between
+			synchronized (this) {
+				replay(lastEventId).forEach(sink::next);
+				subscribers.add(sink);
+			}
+			sink.onDispose(() -> subscribers.remove(sink));
+		}).onBackpressureBuffer(subscriberBuffer, BufferOverflowStrategy.ERROR);
+	}
+
+	private List<ChangeEvent> replay(Long lastEventId) {
+		if (lastEventId == null || lastEventId == lastId) {
+			return List.of();
+		}
+		if (lastEventId > lastId) {
+			return List.of(new ChangeEvent(lastId, ChangeEvent.RESET, null, null, null));
+		}
+		long oldest = Math.max(1, lastId - ring.length + 1);
+		List<ChangeEvent> events = new ArrayList<>((int) (lastId - Math.max(lastEventId, oldest - 1)) + 1);
+		if (lastEventId < oldest - 1) {
+			events.add(new ChangeEvent(oldest - 1, ChangeEvent.RESET, null, null, null));
+		}
+		for (long id = Math.max(lastEventId + 1, oldest); id <= lastId; id++) {
+			events.add(ring[(int) (id % ring.length)]);
+		}
+		return events;
+	}
+}
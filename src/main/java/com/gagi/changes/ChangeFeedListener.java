@@ -0,0 +1,45 @@
+package com.gagi.changes;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Announces every write of a {@link User} or {@link Project} that goes through
+ * the persistence context, whichever endpoint made it. Bulk and native
+ * statements bypass it and publish themselves. Created by Hibernate through
+ * Spring, so it can be injected.
+ */
+public class ChangeFeedListener {
+
+	@Autowired
+	ChangeFeed changeFeed;
+
+	@PostPersist
+	void created(Object entity) {
+		publish(ChangeEvent.CREATE, entity);
+	}
+
+	@PostUpdate
+	void updated(Object entity) {
+		publish(ChangeEvent.UPDATE, entity);
+	}
+
+	@PostRemove
+	void deleted(Object entity) {
+		publish(ChangeEvent.DELETE, entity);
+	}
+
+	private void publish(String type, Object entity) {
+		if (entity instanceof User user) {
+			changeFeed.publishAfterCommit(type, "user", user.getId(), null);
+		} else if (entity instanceof Project project) {
+			changeFeed.publishAfterCommit(type, "project", project.getId(), null);
+		}
+	}
+}
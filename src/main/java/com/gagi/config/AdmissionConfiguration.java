@@ -0,0 +1,41 @@
+package com.gagi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Rate limits and bulkheads in front of every endpoint but the actuator ones,
+ * see {@link AdmissionFilter}. On unless {@code app.admission.enabled} is set to
+ * {@code false}; the defaults in {@link EndpointClass} only turn away clients
+ * far beyond normal use.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "app.admission.enabled", matchIfMissing = true)
+public class AdmissionConfiguration {
+
+	@Bean
+	AdmissionFilter admissionFilter(Environment environment, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		return new AdmissionFilter(environment, objectMapper, meterRegistry);
+	}
+
+	/**
+	 * Right after the observation filter, so rejections show up in the request
+	 * metrics but are made before any other filter does work.
+	 */
+	@Bean
+	FilterRegistrationBean<AdmissionFilter> admissionFilterRegistration(AdmissionFilter admissionFilter) {
+		FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(admissionFilter);
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+		return registration;
+	}
+}
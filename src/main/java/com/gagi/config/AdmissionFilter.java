@@ -0,0 +1,140 @@
+package com.gagi.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gagi.controller.advice.CustomConstraintViolationHandler.CustomError;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admits a request only if its client has a token left for the request's
+ * {@link EndpointClass} and the class has a free slot, and rejects it before
+ * any other work otherwise: with 429 when the client is over its rate, with
+ * 503 when the class is saturated. Both carry {@code Retry-After}. Clients are
+ * told apart by their address; behind a proxy set
+ * {@code server.forward-headers-strategy} so that is the client's own.
+ * <p>
+ * A slot is held until the response is complete, for asynchronous responses
+ * that is when the async processing completes, not when the handler returns.
+ */
+class AdmissionFilter extends OncePerRequestFilter {
+
+	private final Map<EndpointClass, Semaphore> bulkheads = new EnumMap<>(EndpointClass.class);
+	private final Map<EndpointClass, Rate> rates = new EnumMap<>(EndpointClass.class);
+	private final Map<BucketKey, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private final ObjectMapper objectMapper;
+	private final MeterRegistry meterRegistry;
+
+	AdmissionFilter(Environment environment, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		for (EndpointClass endpointClass : EndpointClass.values()) {
+			bulkheads.put(endpointClass, new Semaphore(endpointClass.concurrency(environment)));
+			rates.put(endpointClass, new Rate(endpointClass.rate(environment), endpointClass.burst(environment)));
+		}
+		this.objectMapper = objectMapper;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return EndpointClass.lookupPath(request).startsWith("/actuator/");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		EndpointClass endpointClass = EndpointClass.of(request);
+		long now = System.nanoTime();
+		long wait = buckets.computeIfAbsent(new BucketKey(request.getRemoteAddr(), endpointClass), key -> {
+			Rate rate = rates.get(key.endpointClass());
+			return new TokenBucket(rate.perSecond(), rate.burst(), now);
+		}).tryTake(now);
+		if (wait > 0) {
+			reject(response, endpointClass, HttpStatus.TOO_MANY_REQUESTS, Duration.ofNanos(wait),
+					new CustomError("TOO_MANY_REQUESTS", "Request rate exceeded for " + endpointClass.key + " requests", null));
+			return;
+		}
+		Semaphore bulkhead = bulkheads.get(endpointClass);
+		if (!bulkhead.tryAcquire()) {
+			reject(response, endpointClass, HttpStatus.SERVICE_UNAVAILABLE, Duration.ofSeconds(1),
+					new CustomError("OVERLOADED", "Too many " + endpointClass.key + " requests in progress", null));
+			return;
+		}
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new ReleaseOnComplete(bulkhead));
+			} else {
+				bulkhead.release();
+			}
+		}
+	}
+
+	private void reject(HttpServletResponse response, EndpointClass endpointClass, HttpStatus status, Duration retryAfter,
+			CustomError error) throws IOException {
+		meterRegistry.counter("app.admission.rejected", "class", endpointClass.key, "reason", error.code()).increment();
+		response.setStatus(status.value());
+		// whole seconds, rounded up so a client retrying on time finds a token
+		response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(), error);
+	}
+
+	/** Full buckets admit the same as new ones, dropping them bounds the map by the active clients. */
+	@Scheduled(fixedDelayString = "${app.admission.evict-interval:PT1M}")
+	void evictFullBuckets() {
+		long now = System.nanoTime();
+		buckets.values().removeIf(bucket -> bucket.isFull(now));
+	}
+
+	/**
+	 * Frees the slot once the async processing completed, after a timeout or
+	 * error too, which are always followed by completion.
+	 */
+	private record ReleaseOnComplete(Semaphore bulkhead) implements AsyncListener {
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			bulkhead.release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// listeners are dropped when async processing starts again
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+	private record Rate(double perSecond, int burst) {
+	}
+
+	private record BucketKey(String client, EndpointClass endpointClass) {
+	}
+}
@@ -0,0 +1,80 @@
+package com.gagi.config;
+
+import java.util.regex.Pattern;
+
+import org.springframework.core.env.Environment;
+import org.springframework.web.util.UrlPathHelper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Requests grouped by what they cost, each class with its own rate and
+ * concurrency limits so expensive calls cannot crowd out cheap ones. Limits are
+ * read from {@code app.admission.<class>.rate} (tokens per second per client),
+ * {@code .burst} and {@code .concurrency} (requests in progress over all
+ * clients), with the defaults given here.
+ */
+enum EndpointClass {
+
+	/** Lookups by id and index seeks. */
+	READ("read", 200, 400, 150),
+	/** Listings, searches, scans and exports, whose cost grows with the data. */
+	EXPENSIVE_READ("expensive-read", 20, 50, 16),
+	WRITE("write", 50, 100, 32),
+	/**
+	 * The change feed, connected for as long as the client listens. Its slots
+	 * are held that long, so it has its own, much larger bulkhead and never
+	 * takes the slots of short requests.
+	 */
+	STREAM("stream", 2, 10, 10_000);
+
+	private static final Pattern EXPENSIVE = Pattern.compile(
+			"/(reactive/)?(users|projects)(/\\d+/\\d+|/\\d+/(users|projects)|/cursor|/search|/export|/stream|/stats|/findbyname/.*)?"
+					+ "|/data-api(/.*)?");
+
+	final String key;
+	private final double rate;
+	private final int burst;
+	private final int concurrency;
+
+	EndpointClass(String key, double rate, int burst, int concurrency) {
+		this.key = key;
+		this.rate = rate;
+		this.burst = burst;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Classifies on the decoded path without matrix variables, the one handlers
+	 * are matched against, so {@code /users/search;x=1} or {@code /users/%73earch}
+	 * count as the search they are.
+	 */
+	static EndpointClass of(HttpServletRequest request) {
+		return switch (request.getMethod()) {
+		case "GET", "HEAD", "OPTIONS" -> {
+			String path = lookupPath(request);
+			if (path.equals("/changes")) {
+				yield STREAM;
+			}
+			yield EXPENSIVE.matcher(path).matches() ? EXPENSIVE_READ : READ;
+		}
+		default -> WRITE;
+		};
+	}
+
+	static String lookupPath(HttpServletRequest request) {
+		return UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+	}
+
+	double rate(Environment environment) {
+		return environment.getProperty("app.admission." + key + ".rate", Double.class, rate);
+	}
+
+	int burst(Environment environment) {
+		return environment.getProperty("app.admission." + key + ".burst", Integer.class, burst);
+	}
+
+	int concurrency(Environment environment) {
+		return environment.getProperty("app.admission." + key + ".concurrency", Integer.class, concurrency);
+	}
+}
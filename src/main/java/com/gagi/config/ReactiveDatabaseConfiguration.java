@@ -0,0 +1,49 @@
+package com.gagi.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+
+/**
+ * R2DBC access to the database the JPA side uses, for the endpoints under
+ * {@code /reactive}. The pool is not exposed as a {@code ConnectionFactory} bean
+ * because Boot's DataSource auto-configuration backs off as soon as one exists.
+ */
+@Configuration
+public class ReactiveDatabaseConfiguration implements DisposableBean {
+
+	private static final String H2_PREFIX = "jdbc:h2:";
+
+	private ConnectionPool pool;
+
+	@Bean
+	DatabaseClient reactiveDatabaseClient(DataSourceProperties dataSource,
+			@Value("${app.reactive.pool-size:20}") int poolSize) {
+		String url = dataSource.determineUrl();
+		if (url == null || !url.startsWith(H2_PREFIX)) {
+			throw new IllegalStateException("Reactive reads are only configured for H2, the datasource is " + url);
+		}
+		H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+				.url(url.substring(H2_PREFIX.length()))
+				.username(dataSource.determineUsername())
+				.password(dataSource.determinePassword())
+				.build());
+		pool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory).maxSize(poolSize).build());
+		return DatabaseClient.create(pool);
+	}
+
+	@Override
+	public void destroy() {
+		if (pool != null) {
+			pool.dispose();
+		}
+	}
+}
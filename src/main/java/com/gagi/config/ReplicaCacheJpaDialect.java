@@ -0,0 +1,35 @@
+package com.gagi.config;
+
+import java.sql.SQLException;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * Keeps replica reads out of the second-level and query caches. A lagging
+ * replica's answer cached after the primary's write invalidated the entry
+ * would look current to Hibernate, and every client, the writer included,
+ * would read it until it expires. Sessions of read-only transactions that
+ * {@link ReplicaRoutingDataSource} sends to the replica bypass the caches.
+ * {@link CacheMode#GET} is not enough, the results of cacheable queries still
+ * reach the query cache with it.
+ */
+class ReplicaCacheJpaDialect extends HibernateJpaDialect {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+			throws PersistenceException, SQLException {
+		Object transactionData = super.beginTransaction(entityManager, definition);
+		if (definition.isReadOnly() && ReplicaRoutingDataSource.replicaRequested()) {
+			entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+		}
+		return transactionData;
+	}
+}
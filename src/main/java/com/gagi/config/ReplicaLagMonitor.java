@@ -0,0 +1,61 @@
+package com.gagi.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Measures how far the replica is behind by writing a heartbeat row on the
+ * primary and reading it back from the replica. The replica is only used while
+ * the heartbeat it serves is at most {@code maxLag} old; when it falls behind
+ * or cannot be reached, reads go to the primary until it catches up.
+ */
+class ReplicaLagMonitor {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+	private final JdbcTemplate primary;
+	private final JdbcTemplate replica;
+	private final Duration maxLag;
+	private volatile long lagMillis = Long.MAX_VALUE;
+
+	ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag) {
+		this.primary = new JdbcTemplate(primary);
+		this.replica = new JdbcTemplate(replica);
+		this.maxLag = maxLag;
+		this.primary.execute("create table if not exists replica_heartbeat (id int primary key, beat_at bigint not null)");
+	}
+
+	boolean isReplicaUsable() {
+		return lagMillis <= maxLag.toMillis();
+	}
+
+	/** Seconds the replica is behind, infinite while it cannot be read. */
+	double lagSeconds() {
+		return lagMillis == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : lagMillis / 1000.0;
+	}
+
+	@Scheduled(fixedDelayString = "${app.datasource.replica.check-interval:PT1S}")
+	void check() {
+		long now = System.currentTimeMillis();
+		try {
+			primary.update("merge into replica_heartbeat key(id) values (1, ?)", now);
+		} catch (RuntimeException e) {
+			log.warn("Could not write the replication heartbeat", e);
+		}
+		try {
+			Long beat = replica.queryForObject("select beat_at from replica_heartbeat where id = 1", Long.class);
+			lagMillis = Math.max(0, now - beat);
+		} catch (RuntimeException e) {
+			if (lagMillis != Long.MAX_VALUE) {
+				log.warn("Replica is unreadable, reading from the primary", e);
+			}
+			lagMillis = Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.gagi.config;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.WebUtils;
+
+import com.gagi.controller.ProjectController;
+import com.gagi.controller.UserController;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Decides per request whether the user and project GET handlers may read from
+ * the replica. They may unless the replica lags behind, or the client wrote
+ * within {@code stickyFor}: a write sets a cookie that pins the client's reads
+ * to the primary for that long, so it always reads its own writes. Such
+ * requests are marked with {@link #READ_YOUR_WRITES}.
+ */
+class ReplicaReadInterceptor implements HandlerInterceptor {
+
+	static final String READ_FROM_REPLICA = ReplicaReadInterceptor.class.getName() + ".READ_FROM_REPLICA";
+	static final String READ_YOUR_WRITES = ReplicaReadInterceptor.class.getName() + ".READ_YOUR_WRITES";
+	static final String STICKY_COOKIE = "read-primary-until";
+
+	private final ReplicaLagMonitor lagMonitor;
+	private final Duration stickyFor;
+
+	ReplicaReadInterceptor(ReplicaLagMonitor lagMonitor, Duration stickyFor) {
+		this.lagMonitor = lagMonitor;
+		this.stickyFor = stickyFor;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!(handler instanceof HandlerMethod method) || !(method.getBeanType() == UserController.class
+				|| method.getBeanType() == ProjectController.class)) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		if (HttpMethod.GET.matches(request.getMethod())) {
+			if (stickyToPrimary(request, now)) {
+				request.setAttribute(READ_YOUR_WRITES, Boolean.TRUE);
+			} else if (lagMonitor.isReplicaUsable()) {
+				request.setAttribute(READ_FROM_REPLICA, Boolean.TRUE);
+			}
+		} else if (request.getDispatcherType() == DispatcherType.REQUEST) {
+			response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(STICKY_COOKIE, Long.toString(now + stickyFor.toMillis()))
+					.path("/").maxAge(stickyFor).httpOnly(true).build().toString());
+		}
+		return true;
+	}
+
+	private static boolean stickyToPrimary(HttpServletRequest request, long now) {
+		Cookie cookie = WebUtils.getCookie(request, STICKY_COOKIE);
+		if (cookie == null) {
+			return false;
+		}
+		try {
+			return Long.parseLong(cookie.getValue()) > now;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
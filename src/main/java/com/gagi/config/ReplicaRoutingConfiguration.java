@@ -0,0 +1,110 @@
+package com.gagi.config;
+
+import java.time.Duration;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Splits reads from writes once {@code app.datasource.replica.url} is set: the
+ * {@code spring.datasource} pool stays the primary, a second pool reads from
+ * the replica, and the DataSource JPA uses routes between them, see
+ * {@link ReplicaRoutingDataSource}. Replica pool settings go under
+ * {@code app.datasource.replica.hikari}.
+ */
+@Configuration
+@ConditionalOnProperty("app.datasource.replica.url")
+public class ReplicaRoutingConfiguration {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	@ConfigurationProperties("app.datasource.replica.hikari")
+	HikariDataSource replicaDataSource(DataSourceProperties properties,
+			@Value("${app.datasource.replica.url}") String url,
+			@Value("${app.datasource.replica.username:}") String username,
+			@Value("${app.datasource.replica.password:}") String password) {
+		HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+				.driverClassName(properties.determineDriverClassName()).url(url)
+				.username(username.isEmpty() ? properties.determineUsername() : username)
+				.password(password.isEmpty() ? properties.determinePassword() : password).build();
+		dataSource.setPoolName("replica");
+		dataSource.setReadOnly(true);
+		return dataSource;
+	}
+
+	@Bean
+	@Primary
+	DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+			@Qualifier("replicaDataSource") DataSource replica) {
+		ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource();
+		routing.setTargetDataSources(Map.of(ReplicaRoutingDataSource.PRIMARY, primary, ReplicaRoutingDataSource.REPLICA, replica));
+		routing.setDefaultTargetDataSource(primary);
+		routing.afterPropertiesSet();
+		return new LazyConnectionDataSourceProxy(routing);
+	}
+
+	@Bean
+	ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+			@Qualifier("replicaDataSource") DataSource replica,
+			@Value("${app.datasource.replica.max-lag:PT5S}") Duration maxLag, MeterRegistry meterRegistry) {
+		ReplicaLagMonitor monitor = new ReplicaLagMonitor(primary, replica, maxLag);
+		Gauge.builder("app.datasource.replica.lag", monitor, ReplicaLagMonitor::lagSeconds).baseUnit("seconds")
+				.register(meterRegistry);
+		return monitor;
+	}
+
+	/**
+	 * Installed on the entity manager factory before it is initialized, the
+	 * transaction manager takes the dialect from there.
+	 */
+	@Bean
+	static BeanPostProcessor replicaCacheJpaDialect() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof LocalContainerEntityManagerFactoryBean factory) {
+					factory.setJpaDialect(new ReplicaCacheJpaDialect());
+				}
+				return bean;
+			}
+		};
+	}
+
+	@Bean
+	WebMvcConfigurer replicaReadRouting(ReplicaLagMonitor monitor,
+			@Value("${app.datasource.replica.sticky-for:PT5S}") Duration stickyFor) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new ReplicaReadInterceptor(monitor, stickyFor));
+			}
+		};
+	}
+}
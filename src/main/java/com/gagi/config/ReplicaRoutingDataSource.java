@@ -0,0 +1,31 @@
+package com.gagi.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Sends read-only transactions to the replica when the current request was
+ * marked for it by {@link ReplicaReadInterceptor}, everything else, including
+ * work outside a request, to the primary. Sits behind a
+ * {@code LazyConnectionDataSourceProxy}, so the decision is taken when the first
+ * statement runs and the transaction's read-only flag is already known.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	static final String PRIMARY = "primary";
+	static final String REPLICA = "replica";
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return replicaRequested() && TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+	}
+
+	/** The current request was marked to read from the replica. */
+	static boolean replicaRequested() {
+		RequestAttributes request = RequestContextHolder.getRequestAttributes();
+		return request != null
+				&& request.getAttribute(ReplicaReadInterceptor.READ_FROM_REPLICA, RequestAttributes.SCOPE_REQUEST) != null;
+	}
+}
@@ -0,0 +1,66 @@
+package com.gagi.config;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+import com.gagi.service.SingleFlightLoader;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Loaders behind the multi-get endpoints. Hibernate's multi-load answers what
+ * it can from the second-level cache and reads the rest with one {@code IN}
+ * query, returning the entities in the order asked for. Loads are shared per
+ * database the read is routed to, and not at all for clients that read their
+ * own writes.
+ */
+@Configuration
+public class SingleFlightConfiguration {
+
+	@Bean
+	SingleFlightLoader<User> userLoader(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+		return new SingleFlightLoader<>(ids -> multiLoad(User.class, ids, entityManager, transactionManager),
+				SingleFlightConfiguration::source);
+	}
+
+	@Bean
+	SingleFlightLoader<Project> projectLoader(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+		return new SingleFlightLoader<>(ids -> multiLoad(Project.class, ids, entityManager, transactionManager),
+				SingleFlightConfiguration::source);
+	}
+
+	/**
+	 * Where {@link ReplicaRoutingDataSource} sends the read-only load for the
+	 * current request, {@code null} when the client is pinned to the primary
+	 * to read its own writes: a load another request started earlier may not
+	 * see them yet.
+	 */
+	private static Object source() {
+		RequestAttributes request = RequestContextHolder.getRequestAttributes();
+		if (request == null) {
+			return ReplicaRoutingDataSource.PRIMARY;
+		}
+		if (request.getAttribute(ReplicaReadInterceptor.READ_YOUR_WRITES, RequestAttributes.SCOPE_REQUEST) != null) {
+			return null;
+		}
+		return request.getAttribute(ReplicaReadInterceptor.READ_FROM_REPLICA, RequestAttributes.SCOPE_REQUEST) != null
+				? ReplicaRoutingDataSource.REPLICA
+				: ReplicaRoutingDataSource.PRIMARY;
+	}
+
+	private static <T> List<T> multiLoad(Class<T> type, List<Long> ids, EntityManager entityManager,
+			PlatformTransactionManager transactionManager) {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		return readOnly.execute(status -> entityManager.unwrap(Session.class).byMultipleIds(type).multiLoad(ids));
+	}
+}
@@ -0,0 +1,44 @@
+package com.gagi.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket kept as a single timestamp, the time at which it would be full
+ * again (the generic cell rate algorithm). Taking a token is one compare and
+ * set, and a bucket whose timestamp has passed is full, so it can be dropped
+ * and recreated without changing what it admits.
+ */
+final class TokenBucket {
+
+	private final long nanosPerToken;
+	private final long tolerance;
+	private final AtomicLong fullAt;
+
+	TokenBucket(double tokensPerSecond, int burst, long now) {
+		this.nanosPerToken = (long) (1_000_000_000 / tokensPerSecond);
+		this.tolerance = nanosPerToken * (burst - 1);
+		this.fullAt = new AtomicLong(now);
+	}
+
+	/**
+	 * Takes a token if there is one and returns {@code 0}, otherwise the
+	 * nanoseconds until the next one.
+	 */
+	long tryTake(long now) {
+		while (true) {
+			long current = fullAt.get();
+			long from = Math.max(current, now);
+			long wait = from - tolerance - now;
+			if (wait > 0) {
+				return wait;
+			}
+			if (fullAt.compareAndSet(current, from + nanosPerToken)) {
+				return 0;
+			}
+		}
+	}
+
+	boolean isFull(long now) {
+		return fullAt.get() <= now;
+	}
+}
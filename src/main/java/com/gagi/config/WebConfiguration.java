@@ -0,0 +1,70 @@
+package com.gagi.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+	@Autowired
+	ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+	/**
+	 * Adds a content based ETag to listing responses so polling clients get a 304
+	 * instead of the body. Entity endpoints set a version based ETag themselves,
+	 * which the filter leaves alone, and streaming endpoints opt out with
+	 * {@link ShallowEtagHeaderFilter#disableContentCaching}.
+	 */
+	@Bean
+	FilterRegistrationBean<ShallowEtagHeaderFilter> listingEtagFilter() {
+		FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+		registration.addUrlPatterns("/projects/*", "/users/*");
+		return registration;
+	}
+
+	/**
+	 * Reads and writes properties through generated lambdas instead of
+	 * reflection. Boot registers it with every mapper it builds.
+	 */
+	@Bean
+	Module blackbirdModule() {
+		return new BlackbirdModule();
+	}
+
+	/**
+	 * {@code application/cbor} and {@code application/x-jackson-smile} for the
+	 * controllers, chosen by {@code Accept}. Spring registers converters for both
+	 * after the JSON one, but with a plain mapper; they are replaced in place by
+	 * ones built from Boot's builder, so they serialize exactly like the JSON
+	 * mapper, only in a binary encoding. {@code /data-api} stays HAL JSON, its
+	 * handler mapping only produces JSON media types.
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.replaceAll(converter -> {
+			if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+				return new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.getObject().factory(new CBORFactory()).build());
+			}
+			if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+				return new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.getObject().factory(new SmileFactory()).build());
+			}
+			return converter;
+		});
+	}
+}
@@ -0,0 +1,43 @@
+package com.gagi.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+import com.gagi.repository.ProjectRepository;
+import com.gagi.repository.UserRepository;
+import com.gagi.service.WriteBehindBuffer;
+
+/**
+ * Buffers that coalesce user patches and project updates sent without
+ * {@code If-Match}. Off unless {@code app.write-behind.enabled} is set, since a
+ * buffered write answers up to {@code app.write-behind.window} later.
+ */
+@Configuration
+public class WriteBehindConfiguration {
+
+	@Value("${app.write-behind.enabled:false}")
+	boolean enabled;
+	@Value("${app.write-behind.window:50ms}")
+	Duration window;
+	@Value("${app.write-behind.max-queued:10000}")
+	int maxQueued;
+
+	@Bean
+	WriteBehindBuffer<User> userWriteBehind(UserRepository userRepository, TransactionTemplate transactionTemplate) {
+		return new WriteBehindBuffer<>("user", userRepository, User::getId, transactionTemplate, enabled, window,
+				maxQueued);
+	}
+
+	@Bean
+	WriteBehindBuffer<Project> projectWriteBehind(ProjectRepository projectRepository,
+			TransactionTemplate transactionTemplate) {
+		return new WriteBehindBuffer<>("project", projectRepository, Project::getId, transactionTemplate, enabled,
+				window, maxQueued);
+	}
+}
@@ -0,0 +1,66 @@
+package com.gagi.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Exposes hit, miss, put and eviction counts of the second-level cache regions
+ * configured in {@code ehcache.xml}, to help size them.
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheStatisticsController {
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@GetMapping("/stats")
+	public List<RegionStatistics> getStatistics() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		String[] regions = statistics.getSecondLevelCacheRegionNames();
+		List<RegionStatistics> result = new ArrayList<>(regions.length);
+		for (String region : regions) {
+			CacheRegionStatistics counts = statistics.getCacheRegionStatistics(region);
+			if (counts != null) {
+				result.add(new RegionStatistics(region, counts.getHitCount(), counts.getMissCount(), counts.getPutCount(),
+						evictions(region)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Evictions are only tracked by the JCache provider, read them from its
+	 * statistics MBean. Returns -1 when they are not available.
+	 */
+	private static long evictions(String region) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (ObjectName name : server.queryNames(
+					new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + region), null)) {
+				return (Long) server.getAttribute(name, "CacheEvictions");
+			}
+		} catch (JMException e) {
+			// fall through
+		}
+		return -1;
+	}
+
+	public record RegionStatistics(String region, long hits, long misses, long puts, long evictions) {
+	}
+}
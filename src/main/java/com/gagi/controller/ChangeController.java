@@ -0,0 +1,45 @@
+package com.gagi.controller;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.gagi.changes.ChangeEvent;
+import com.gagi.changes.ChangeFeed;
+
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/changes")
+public class ChangeController {
+
+	static final String LAST_EVENT_ID = "Last-Event-ID";
+
+	@Autowired
+	ChangeFeed changeFeed;
+	@Value("${app.changes.keep-alive:PT15S}")
+	Duration keepAlive;
+
+	/**
+	 * Server-sent events for every change to users and projects. Each event
+	 * carries its offset as id, so a reconnecting client (or browser
+	 * {@code EventSource}) resumes after the last one it received. Comments are
+	 * sent while idle, to keep proxies from closing the connection.
+	 */
+	@GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<ChangeEvent>> changes(
+			@RequestHeader(name = LAST_EVENT_ID, required = false) Long lastEventId) {
+		Flux<ServerSentEvent<ChangeEvent>> events = changeFeed.subscribe(lastEventId)
+				.map(event -> ServerSentEvent.builder(event).id(Long.toString(event.id())).event(event.type()).build());
+		Flux<ServerSentEvent<ChangeEvent>> keepAlives = Flux.interval(keepAlive)
+				.map(tick -> ServerSentEvent.<ChangeEvent>builder().comment("keep-alive").build());
+		return Flux.merge(events, keepAlives);
+	}
+}
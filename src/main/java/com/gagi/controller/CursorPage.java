@@ -0,0 +1,47 @@
+package com.gagi.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import com.gagi.domain.InvalidRequestException;
+
+/**
+ * One page of a keyset (seek) listing. {@code nextCursor} is an opaque token to
+ * be passed back as {@code after} to fetch the following page, or {@code null}
+ * when there are no more rows.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor) {
+
+	/**
+	 * Builds a page out of rows fetched with a limit of {@code size + 1}; the
+	 * extra row only tells us whether another page exists and is not returned.
+	 */
+	static <T> CursorPage<T> of(List<T> rows, int size, ToLongFunction<T> idOf) {
+		if (rows.size() <= size) {
+			return new CursorPage<>(rows, null);
+		}
+		List<T> content = rows.subList(0, size);
+		return new CursorPage<>(content, encode(idOf.applyAsLong(content.get(size - 1))));
+	}
+
+	static String encode(long id) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Returns the id to seek after, {@code 0} (before any generated id) for a
+	 * missing cursor.
+	 */
+	static long decode(String cursor) {
+		if (cursor == null || cursor.isBlank()) {
+			return 0L;
+		}
+		try {
+			return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidRequestException("Invalid cursor: " + cursor);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.gagi.controller;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Strong entity tags derived from the {@code @Version} column of an entity.
+ */
+final class ETags {
+
+	private ETags() {
+	}
+
+	static String of(long version) {
+		return "\"" + version + "\"";
+	}
+
+	/**
+	 * Verifies an {@code If-Match} request header against the current version of
+	 * the entity. A missing header always matches.
+	 *
+	 * @throws OptimisticLockingFailureException if none of the listed tags match
+	 */
+	static void checkIfMatch(String ifMatch, long version) {
+		if (ifMatch == null || ifMatch.isBlank()) {
+			return;
+		}
+		String current = of(version);
+		for (String tag : ifMatch.split(",")) {
+			String trimmed = tag.trim();
+			if (trimmed.equals("*") || trimmed.equals(current)) {
+				return;
+			}
+		}
+		throw new OptimisticLockingFailureException("If-Match does not match the current version " + current);
+	}
+}
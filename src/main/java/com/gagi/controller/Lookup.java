@@ -0,0 +1,39 @@
+package com.gagi.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.gagi.domain.InvalidRequestException;
+import com.gagi.service.SingleFlightLoader;
+
+/**
+ * One entry of a multi-get response, in the position of the requested id. Ids
+ * that do not exist are answered with {@code found: false} and no value.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Lookup<T>(Long id, boolean found, T value) {
+
+	static final int MAX_IDS = 200;
+
+	/**
+	 * @throws InvalidRequestException for more than {@link #MAX_IDS} ids or an
+	 *                                  empty one
+	 */
+	static <E, T> List<Lookup<T>> resolve(List<Long> ids, SingleFlightLoader<E> loader, Function<E, T> view) {
+		if (ids.size() > MAX_IDS) {
+			throw new InvalidRequestException("At most " + MAX_IDS + " ids can be requested at once");
+		}
+		if (ids.contains(null)) {
+			throw new InvalidRequestException("ids may not contain empty values");
+		}
+		List<E> entities = loader.getAll(ids);
+		List<Lookup<T>> lookups = new ArrayList<>(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			E entity = entities.get(i);
+			lookups.add(new Lookup<>(ids.get(i), entity != null, entity == null ? null : view.apply(entity)));
+		}
+		return lookups;
+	}
+}
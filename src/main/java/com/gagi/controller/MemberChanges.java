@@ -0,0 +1,17 @@
+package com.gagi.controller;
+
+import java.util.List;
+
+/**
+ * Body of {@code PUT /projects/{projectId}/members}: ids of users to add to and
+ * to remove from the project. Either list may be omitted.
+ */
+public record MemberChanges(List<Long> add, List<Long> remove) {
+
+	/**
+	 * Number of membership rows actually written, ids that were already members
+	 * (or not members) are not counted.
+	 */
+	public record Result(int added, int removed) {
+	}
+}
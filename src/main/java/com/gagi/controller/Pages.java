@@ -0,0 +1,40 @@
+package com.gagi.controller;
+
+import org.springframework.data.domain.PageRequest;
+
+import com.gagi.domain.InvalidRequestException;
+
+/**
+ * Page requests built from client parameters, with the size bounded so that a
+ * single request cannot ask for an arbitrarily large result.
+ */
+final class Pages {
+
+	static final int MAX_SIZE = 400;
+
+	private Pages() {
+
+	}
+
+	static PageRequest of(int page, int size) {
+		if (page < 0) {
+			throw new InvalidRequestException("page must not be negative");
+		}
+		return PageRequest.of(page, checkSize(size));
+	}
+
+	/**
+	 * A limit of one row more than the page, for {@link CursorPage#of} to tell
+	 * whether there is a next page.
+	 */
+	static PageRequest lookahead(int size) {
+		return PageRequest.ofSize(checkSize(size) + 1);
+	}
+
+	private static int checkSize(int size) {
+		if (size < 1 || size > MAX_SIZE) {
+			throw new InvalidRequestException("size must be between 1 and " + MAX_SIZE);
+		}
+		return size;
+	}
+}
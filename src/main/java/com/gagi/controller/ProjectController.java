@@ -1,95 +1,398 @@
 package com.gagi.controller;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.gagi.changes.ChangeEvent;
+import com.gagi.changes.ChangeFeed;
+import com.gagi.domain.InvalidRequestException;
 import com.gagi.domain.Project;
+import com.gagi.domain.ProjectMemberCount;
+import com.gagi.domain.ProjectMembership;
+import com.gagi.domain.ProjectStats;
+import com.gagi.domain.ProjectSummary;
 import com.gagi.domain.User;
+import com.gagi.repository.ProjectMembershipRepository;
 import com.gagi.repository.ProjectRepository;
 import com.gagi.repository.UserRepository;
+import com.gagi.search.ProjectSearchHit;
+import com.gagi.search.ProjectSearchIndex;
+import com.gagi.service.SingleFlightLoader;
+import com.gagi.service.WriteBehindBuffer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/projects")
 public class ProjectController {
 
+	static final String NDJSON = "application/x-ndjson";
+	private static final int EXPORT_BATCH_SIZE = 500;
+	private static final int MAX_STATS_IDS = 5000;
+
 	@Autowired
 	ProjectRepository projectRepository;
 	@Autowired
 	UserRepository userRepository;
+	@Autowired
+	ProjectMembershipRepository projectMembershipRepository;
+	@Autowired
+	EntityManager entityManager;
+	@Autowired
+	ObjectMapper objectMapper;
+	@Autowired
+	ProjectSearchIndex projectSearchIndex;
+	@Autowired
+	WriteBehindBuffer<Project> projectWriteBehind;
+	@Autowired
+	SingleFlightLoader<Project> projectLoader;
+	@Autowired
+	ChangeFeed changeFeed;
 
 	@PostMapping(consumes = "application/json")
 	@ResponseStatus(HttpStatus.CREATED)
 	public Project save(@RequestBody Project project) {
-		return projectRepository.save(project);
+		// members are only added through the membership endpoints
+		project.setUsers(null);
+		Project saved = projectRepository.save(project);
+		projectSearchIndex.index(saved);
+		return saved;
+	}
+
+	/**
+	 * Full-text search over names and descriptions, best matches first. The query
+	 * uses Lucene syntax, e.g. {@code ?q=reporting AND name:billing*}.
+	 */
+	@GetMapping(path = "/search")
+	public List<ProjectSearchHit> search(@RequestParam(name = "q") String query,
+			@RequestParam(name = "page", defaultValue = "0") Integer page,
+			@RequestParam(name = "size", defaultValue = "10") Integer size) {
+		return projectSearchIndex.search(query, Pages.of(page, size));
 	}
 
+	/**
+	 * Listings select only the summary columns in SQL. {@code fields} narrows the
+	 * selection further (e.g. {@code ?fields=name}), the id is always included.
+	 */
 	@GetMapping("/{page}/{size}")
-	public Iterable<Project> getProjects(@PathVariable(required = true, name = "page") Integer page,
-			@PathVariable(required = true, name = "size") Integer size) {
-		PageRequest pageRequest = PageRequest.of(page, size);
-		return projectRepository.findAll(pageRequest).getContent().stream()
-				.map(e -> new Project(e.getId(), e.getName(), e.getDescription())).toList();
+	public Iterable<?> getProjects(@PathVariable(required = true, name = "page") Integer page,
+			@PathVariable(required = true, name = "size") Integer size,
+			@RequestParam(name = "fields", required = false) List<String> fields) {
+		PageRequest pageRequest = Pages.of(page, size);
+		if (fields != null) {
+			return projectRepository.findFields(fields, 0L, pageRequest);
+		}
+		return projectRepository.findSummaries(pageRequest);
 	}
 
 	@GetMapping
-	public Iterable<Project> getProjects() {
-		PageRequest pageRequest = PageRequest.of(0, 10);
-		return projectRepository.findAll(pageRequest).getContent().stream()
-				.map(e -> new Project(e.getId(), e.getName(), e.getDescription())).toList();
+	public Iterable<?> getProjects(@RequestParam(name = "fields", required = false) List<String> fields) {
+		return getProjects(0, 10, fields);
+	}
+
+	/**
+	 * Summaries of many projects in the order of {@code ids}, see
+	 * {@link UserController#getUsersByIds}.
+	 */
+	@GetMapping(params = "ids")
+	public List<Lookup<ProjectSummary>> getProjectsByIds(@RequestParam(name = "ids") List<Long> ids) {
+		return Lookup.resolve(ids, projectLoader, ProjectSummary::of);
+	}
+
+	@GetMapping(path = "/cursor")
+	public CursorPage<?> getProjectsAfter(@RequestParam(name = "after", required = false) String after,
+			@RequestParam(name = "size", defaultValue = "10") Integer size,
+			@RequestParam(name = "fields", required = false) List<String> fields) {
+		PageRequest limit = Pages.lookahead(size);
+		if (fields != null) {
+			return CursorPage.of(projectRepository.findFields(fields, CursorPage.decode(after), limit), size,
+					row -> (Long) row.get("id"));
+		}
+		return CursorPage.of(projectRepository.findSummariesAfter(CursorPage.decode(after), limit), size,
+				ProjectSummary::id);
+	}
+
+	/**
+	 * Streams every project with its members as newline delimited JSON. Rows are
+	 * written as they come off the cursor and the persistence context is cleared
+	 * after each batch, so memory use does not grow with the number of projects.
+	 */
+	@GetMapping(path = "/export", produces = NDJSON)
+	@Transactional(readOnly = true)
+	public void export(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		ShallowEtagHeaderFilter.disableContentCaching(request);
+		response.setContentType(NDJSON);
+		ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (Stream<Project> projects = projectRepository.streamAll();
+				JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+			generator.setRootValueSeparator(null);
+			List<Project> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+			Iterator<Project> iterator = projects.iterator();
+			while (iterator.hasNext()) {
+				batch.add(iterator.next());
+				if (batch.size() == EXPORT_BATCH_SIZE) {
+					writeBatch(batch, writer, generator);
+				}
+			}
+			writeBatch(batch, writer, generator);
+		}
+	}
+
+	private void writeBatch(List<Project> batch, ObjectWriter writer, JsonGenerator generator) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		projectRepository.fetchUsers(batch.stream().map(Project::getId).toList());
+		for (Project project : batch) {
+			writer.writeValue(generator, project);
+			generator.writeRaw('\n');
+		}
+		generator.flush();
+		batch.clear();
+		entityManager.clear();
 	}
 
+	/**
+	 * The project without its members, so the response has the same size however
+	 * many members there are; page through them with {@code /{projectId}/users}.
+	 * Answers {@code If-None-Match} from the version column alone, the entity is
+	 * only loaded and serialized when the client's copy is stale.
+	 */
 	@GetMapping(path = "/{projectId}")
-	public Project getProjectById(@PathVariable("projectId") Long projectId) {
-		return projectRepository.findById(projectId).orElseThrow();
+	public ResponseEntity<ProjectSummary> getProjectById(@PathVariable("projectId") Long projectId, WebRequest request) {
+		if (isNotModified(projectId, request)) {
+			return null;
+		}
+		Project project = projectRepository.findById(projectId).orElseThrow();
+		return ResponseEntity.ok().eTag(ETags.of(project.getVersion())).body(ProjectSummary.of(project));
+	}
+
+	/**
+	 * The project with all of its members, fetched in a single query.
+	 */
+	@GetMapping(path = "/{projectId}", params = "include=users")
+	public ResponseEntity<Project> getProjectWithUsersById(@PathVariable("projectId") Long projectId, WebRequest request) {
+		if (isNotModified(projectId, request)) {
+			return null;
+		}
+		Project project = projectRepository.findWithUsersById(projectId).orElseThrow();
+		return ResponseEntity.ok().eTag(ETags.of(project.getVersion())).body(project);
+	}
+
+	private boolean isNotModified(Long projectId, WebRequest request) {
+		if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+			return false;
+		}
+		Optional<Long> version = projectRepository.findVersionById(projectId);
+		return version.isPresent() && request.checkNotModified(ETags.of(version.get()));
+	}
+
+	/**
+	 * A page of the project's members in id order, {@code cursor} is the
+	 * {@code nextCursor} of the previous page.
+	 */
+	@GetMapping(path = "/{projectId}/users")
+	public CursorPage<User> getMembers(@PathVariable("projectId") Long projectId,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "20") Integer size) {
+		List<User> rows = projectRepository.findMembersAfter(projectId, CursorPage.decode(cursor), Pages.lookahead(size));
+		if (rows.isEmpty() && !projectRepository.existsById(projectId)) {
+			throw new NoSuchElementException("No such project");
+		}
+		return CursorPage.of(rows, size, User::getId);
 	}
 
+	/**
+	 * When and in which role the user joined the project, a single primary key
+	 * lookup.
+	 */
+	@GetMapping(path = "/{projectId}/members/{userId}")
+	public ProjectMembership getMembership(@PathVariable("projectId") Long projectId, @PathVariable("userId") Long userId) {
+		return projectMembershipRepository.findById(new ProjectMembership.Id(projectId, userId))
+				.orElseThrow(() -> new NoSuchElementException("The user is not a member of the project"));
+	}
+
+	/**
+	 * Coalesced with other updates to the same project when write-behind is
+	 * enabled and no {@code If-Match} is sent, see
+	 * {@link UserController#patchUser}.
+	 */
 	@PutMapping(path = "/{projectId}", consumes = "application/json")
-	public Project update(@PathVariable("projectId") Long projectId, @RequestBody Project project) {
+	public CompletableFuture<ResponseEntity<ProjectSummary>> update(@PathVariable("projectId") Long projectId,
+			@RequestBody Project project, @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch == null && projectWriteBehind.isEnabled()) {
+			return projectWriteBehind.submit(projectId, fromDb -> applyUpdate(fromDb, project)).thenApply(this::updated);
+		}
 		Project fromDb = projectRepository.findById(projectId).orElseThrow();
+		ETags.checkIfMatch(ifMatch, fromDb.getVersion());
+		applyUpdate(fromDb, project);
+		return CompletableFuture.completedFuture(updated(projectRepository.save(fromDb)));
+	}
+
+	private static void applyUpdate(Project fromDb, Project project) {
 		if(project.getName() != null) {
 			fromDb.setName(project.getName());
 		}
 		if(project.getDescription() != null) {
 			fromDb.setDescription(project.getDescription());
 		}
-		return projectRepository.save(fromDb);
+	}
+
+	private ResponseEntity<ProjectSummary> updated(Project saved) {
+		projectSearchIndex.index(saved);
+		return ResponseEntity.ok().eTag(ETags.of(saved.getVersion())).body(ProjectSummary.of(saved));
 	}
 
 	@PutMapping(path = "/assign/{projectId}/{userId}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
+	@Transactional
 	public void assignUserToProject(@PathVariable("projectId") Long projectId, @PathVariable("userId") Long userId) {
-		Project project = projectRepository.findById(projectId).orElseThrow();
-		User user = userRepository.findById(userId).orElseThrow();
-		project.getUsers().add(user);
-		projectRepository.save(project);
+		Project project = lockForMemberChange(projectId);
+		userRepository.findById(userId).orElseThrow();
+		int added = projectRepository.addMembers(projectId, List.of(userId));
+		membersChanged(project, added, 0);
+		if (added > 0) {
+			changeFeed.publishAfterCommit(ChangeEvent.ASSIGN, "project", projectId, userId);
+		}
 	}
 
 	@PutMapping(path = "/remove/{projectId}/{userId}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
+	@Transactional
 	public void removeUserFromProject(@PathVariable("projectId") Long projectId, @PathVariable("userId") Long userId) {
-		Project project = projectRepository.findById(projectId).orElseThrow();
-		project.getUsers().removeIf(u -> u.getId() == userId);
-		projectRepository.save(project);
+		Project project = lockForMemberChange(projectId);
+		int removed = projectRepository.removeMembers(projectId, List.of(userId));
+		membersChanged(project, 0, removed);
+		if (removed > 0) {
+			changeFeed.publishAfterCommit(ChangeEvent.REMOVE, "project", projectId, userId);
+		}
+	}
+
+	/**
+	 * Adds and removes members in bulk with set-based statements on the
+	 * membership table, so the cost is proportional to the number of changed rows and not to
+	 * the size of the project. Ids of users that do not exist are ignored. The
+	 * rows to write are read first, under the project lock, so an assign or remove
+	 * event is published for each user whose membership actually changed.
+	 */
+	@PutMapping(path = "/{projectId}/members", consumes = "application/json")
+	@Transactional
+	public MemberChanges.Result updateMembers(@PathVariable("projectId") Long projectId, @RequestBody MemberChanges changes) {
+		Project project = lockForMemberChange(projectId);
+		List<Long> added = changes.add() == null || changes.add().isEmpty() ? List.of()
+				: projectRepository.findNonMemberIds(projectId, changes.add());
+		if (!added.isEmpty()) {
+			projectRepository.addMembers(projectId, added);
+		}
+		List<Long> removed = changes.remove() == null || changes.remove().isEmpty() ? List.of()
+				: projectRepository.findMemberIds(projectId, changes.remove());
+		if (!removed.isEmpty()) {
+			projectRepository.removeMembers(projectId, removed);
+		}
+		membersChanged(project, added.size(), removed.size());
+		added.forEach(userId -> changeFeed.publishAfterCommit(ChangeEvent.ASSIGN, "project", projectId, userId));
+		removed.forEach(userId -> changeFeed.publishAfterCommit(ChangeEvent.REMOVE, "project", projectId, userId));
+		return new MemberChanges.Result(added.size(), removed.size());
+	}
+
+	/**
+	 * Loads the project with a row lock, so concurrent membership changes of a
+	 * project are serialized.
+	 */
+	private Project lockForMemberChange(Long projectId) {
+		Project project = entityManager.find(Project.class, projectId, LockModeType.PESSIMISTIC_WRITE);
+		if (project == null) {
+			throw new NoSuchElementException("No such project");
+		}
+		return project;
+	}
+
+	/**
+	 * Membership rows are not columns of the project, but they are part of its
+	 * representation, so changing them has to move the version (and ETag) on.
+	 * It is done through the persistence context, so only this project's
+	 * second-level cache entry is invalidated. A new member count makes the
+	 * update versioned and is announced by the entity listener; when the count
+	 * stays the same, the version is incremented explicitly and announced here.
+	 */
+	private void membersChanged(Project project, int added, int removed) {
+		if (added != removed) {
+			project.adjustMemberCount(added - removed);
+		} else if (added > 0) {
+			entityManager.lock(project, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+			changeFeed.publishAfterCommit(ChangeEvent.UPDATE, "project", project.getId(), null);
+		}
+	}
+
+	/**
+	 * Project and membership totals, from one aggregate over the maintained
+	 * member counts.
+	 */
+	@GetMapping(path = "/stats")
+	public ProjectStats getStats() {
+		return projectRepository.findStats();
+	}
+
+	/**
+	 * Member counts of the given projects in one indexed query, for overview
+	 * pages. Ids of projects that do not exist are left out.
+	 */
+	@GetMapping(path = "/stats", params = "ids")
+	public List<ProjectMemberCount> getMemberCounts(@RequestParam(name = "ids") List<Long> ids) {
+		if (ids.size() > MAX_STATS_IDS) {
+			throw new InvalidRequestException("At most " + MAX_STATS_IDS + " ids can be requested at once");
+		}
+		return ids.isEmpty() ? List.of() : projectRepository.findMemberCounts(ids);
 	}
 
 	@DeleteMapping("/{projectId}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
 	public void delete(@PathVariable("projectId") Long projectId) {
 		projectRepository.deleteById(projectId);
+		projectSearchIndex.remove(projectId);
 	}
 
 	@GetMapping(path = "/findbyname/{name}")
-	public Project getProjectByName(@PathVariable("name") String name) {
-		return projectRepository.findByName(name);
+	public ProjectSummary getProjectByName(@PathVariable("name") String name) {
+		Project project = projectRepository.findByName(name);
+		return project == null ? null : ProjectSummary.of(project);
+	}
+
+	@GetMapping(path = "/findbyname/{name}", params = "include=users")
+	public Project getProjectWithUsersByName(@PathVariable("name") String name) {
+		return projectRepository.findWithUsersByName(name).orElse(null);
 	}
 }
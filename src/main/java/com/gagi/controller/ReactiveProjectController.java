@@ -0,0 +1,55 @@
+package com.gagi.controller;
+
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.gagi.domain.Project;
+import com.gagi.domain.ProjectSummary;
+import com.gagi.repository.ReactiveProjectRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read only counterpart of {@link ProjectController} served from R2DBC, see
+ * {@link ReactiveUserController}.
+ */
+@RestController
+@RequestMapping("/reactive/projects")
+public class ReactiveProjectController {
+
+	@Autowired
+	ReactiveProjectRepository reactiveProjectRepository;
+
+	@GetMapping(path = "/{projectId}")
+	public Mono<Project> getProjectById(@PathVariable("projectId") Long projectId) {
+		return reactiveProjectRepository.findById(projectId).switchIfEmpty(Mono.error(NoSuchElementException::new));
+	}
+
+	@GetMapping(path = "/{page}/{size}")
+	public Flux<ProjectSummary> getProjects(@PathVariable(required = true, name = "page") Integer page,
+			@PathVariable(required = true, name = "size") Integer size) {
+		return reactiveProjectRepository.findSummaries(Pages.of(page, size));
+	}
+
+	@GetMapping
+	public Flux<ProjectSummary> getProjects() {
+		return getProjects(0, 10);
+	}
+
+	@GetMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<ProjectSummary> stream() {
+		return reactiveProjectRepository.streamSummaries();
+	}
+
+	@GetMapping(path = "/findbyname/{name}")
+	public Mono<Project> getProjectByName(@PathVariable("name") String name) {
+		return reactiveProjectRepository.findByName(name);
+	}
+}
@@ -0,0 +1,62 @@
+package com.gagi.controller;
+
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.gagi.domain.User;
+import com.gagi.repository.ReactiveUserRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read only counterpart of {@link UserController} served from R2DBC. The servlet
+ * request is released while the query runs and resumed when the result is
+ * ready; {@code /stream} writes one user per line and only asks the database for
+ * more rows as the client keeps up.
+ */
+@RestController
+@RequestMapping("/reactive/users")
+public class ReactiveUserController {
+
+	@Autowired
+	ReactiveUserRepository reactiveUserRepository;
+
+	@GetMapping(path = "/{userId}")
+	public Mono<User> getUserById(@PathVariable("userId") Long userId) {
+		return reactiveUserRepository.findById(userId).switchIfEmpty(Mono.error(NoSuchElementException::new));
+	}
+
+	@GetMapping(path = "/{page}/{size}")
+	public Flux<User> getUsers(@PathVariable(required = true, name = "page") Integer page,
+			@PathVariable(required = true, name = "size") Integer size) {
+		return reactiveUserRepository.findAll(Pages.of(page, size));
+	}
+
+	@GetMapping
+	public Flux<User> getUsers() {
+		return getUsers(0, 10);
+	}
+
+	@GetMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<User> stream() {
+		return reactiveUserRepository.streamAll();
+	}
+
+	@GetMapping(path = "/findbyname/{name}")
+	public Flux<User> getByName(@PathVariable(required = true, name = "name") String name) {
+		return reactiveUserRepository.findByName(name, PageRequest.of(0, 10));
+	}
+
+	@GetMapping(path = "/findbyemail/{email}")
+	public Mono<User> getByEmail(@PathVariable(required = true, name = "email") String email) {
+		return reactiveUserRepository.findByEmail(email);
+	}
+}
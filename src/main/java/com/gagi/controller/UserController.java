@@ -1,8 +1,22 @@
 package com.gagi.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -10,34 +24,142 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gagi.changes.ChangeEvent;
+import com.gagi.changes.ChangeFeed;
+import com.gagi.domain.ProjectSummary;
 import com.gagi.domain.User;
+import com.gagi.repository.ProjectRepository;
 import com.gagi.repository.UserRepository;
+import com.gagi.repository.UserRepositoryCustom.Upserted;
+import com.gagi.service.BulkUserResult;
+import com.gagi.service.IdempotencyService;
+import com.gagi.service.SingleFlightLoader;
+import com.gagi.service.UserImportService;
+import com.gagi.service.WriteBehindBuffer;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+	private static final int MAX_SEARCH_SIZE = 50;
+
 	@Autowired
 	UserRepository userRepository;
+	@Autowired
+	ProjectRepository projectRepository;
+	@Autowired
+	UserImportService userImportService;
+	@Autowired
+	ObjectMapper objectMapper;
+	@Autowired
+	Validator validator;
+	@Autowired
+	IdempotencyService idempotencyService;
+	@Autowired
+	WriteBehindBuffer<User> userWriteBehind;
+	@Autowired
+	SingleFlightLoader<User> userLoader;
+	@Autowired
+	ChangeFeed changeFeed;
 
+	/**
+	 * With an {@code Idempotency-Key} a retried request returns the user the
+	 * first attempt created, instead of failing on the duplicate email.
+	 */
 	@PostMapping(consumes = "application/json")
 	@ResponseStatus(HttpStatus.CREATED)
-	public User save(@RequestBody User user) {
-		return userRepository.save(user);
+	public User save(@RequestBody User user,
+			@RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+		if (idempotencyKey == null) {
+			checkBeforeWrite(user, null);
+			return userRepository.save(user);
+		}
+		return idempotencyService.execute(idempotencyKey, user.getName() + '\0' + user.getEmail(), () -> {
+			checkBeforeWrite(user, null);
+			return userRepository.save(user);
+		}, User::getId, id -> userRepository.findById(id)
+				.orElseThrow(() -> new NoSuchElementException("The user created with this key was deleted")));
+	}
+
+	/**
+	 * Creates the user with the email or renames the existing one, in one
+	 * statement and without a read first, so retries are safe. The email is
+	 * taken from the path, only the name from the body.
+	 */
+	@PutMapping(path = "/by-email/{email}", consumes = "application/json")
+	public ResponseEntity<User> upsertByEmail(@PathVariable("email") String email, @RequestBody User user) {
+		User candidate = new User(user.getName(), email);
+		validate(candidate);
+		Upserted upserted = userRepository.upsertByEmail(email, candidate.getName());
+		User saved = upserted.user();
+		// the merge bypasses the entity listeners
+		if (upserted.changed()) {
+			changeFeed.publishAfterCommit(upserted.inserted() ? ChangeEvent.CREATE : ChangeEvent.UPDATE, "user",
+					saved.getId(), null);
+		}
+		return ResponseEntity.ok().eTag(ETags.of(saved.getVersion())).body(saved);
 	}
 
+	/**
+	 * Accepts either a JSON array or newline delimited JSON. The body is read
+	 * record by record while importing, and the result lists the outcome of every
+	 * record in input order.
+	 */
+	@PostMapping(path = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	public List<BulkUserResult> bulkSave(InputStream body) throws IOException {
+		try (MappingIterator<User> users = objectMapper.readerFor(User.class).readValues(body)) {
+			return userImportService.importUsers(users);
+		}
+	}
+
+	/**
+	 * Answers {@code If-None-Match} from the version column alone, the entity is
+	 * only loaded and serialized when the client's copy is stale.
+	 */
 	@GetMapping(path = "/{userId}")
-	public User getUserById(@PathVariable("userId") Long userId) {
-		return userRepository.findById(userId).orElseThrow();
+	public ResponseEntity<User> getUserById(@PathVariable("userId") Long userId, WebRequest request) {
+		if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+			Optional<Long> version = userRepository.findVersionById(userId);
+			if (version.isPresent() && request.checkNotModified(ETags.of(version.get()))) {
+				return null;
+			}
+		}
+		User user = userRepository.findById(userId).orElseThrow();
+		return ResponseEntity.ok().eTag(ETags.of(user.getVersion())).body(user);
+	}
+
+	/**
+	 * A page of the projects the user is a member of, see
+	 * {@link ProjectController#getMembers}.
+	 */
+	@GetMapping(path = "/{userId}/projects")
+	public CursorPage<ProjectSummary> getProjects(@PathVariable("userId") Long userId,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "20") Integer size) {
+		List<ProjectSummary> rows = projectRepository.findSummariesByMemberAfter(userId, CursorPage.decode(cursor),
+				Pages.lookahead(size));
+		if (rows.isEmpty() && !userRepository.existsById(userId)) {
+			throw new NoSuchElementException("No such user");
+		}
+		return CursorPage.of(rows, size, ProjectSummary::id);
 	}
 
 	@GetMapping(path = "/{page}/{size}")
 	public Iterable<User> getUsers(@PathVariable(required = true, name = "page") Integer page, @PathVariable(required = true, name = "size") Integer size) {
-		PageRequest pageRequest = PageRequest.of(page, size);
+		PageRequest pageRequest = Pages.of(page, size);
 		return userRepository.findAll(pageRequest).getContent();
 	}
 	
@@ -47,6 +169,38 @@ public class UserController {
 		return userRepository.findAll(pageRequest).getContent();
 	}
 
+	/**
+	 * Resolves many users in one request, in the order of {@code ids}. Lookups of
+	 * the same id by concurrent requests share a single read.
+	 */
+	@GetMapping(params = "ids")
+	public List<Lookup<User>> getUsersByIds(@RequestParam(name = "ids") List<Long> ids) {
+		return Lookup.resolve(ids, userLoader, Function.identity());
+	}
+
+	@GetMapping(path = "/cursor")
+	public CursorPage<User> getUsersAfter(@RequestParam(name = "after", required = false) String after,
+			@RequestParam(name = "size", defaultValue = "10") Integer size) {
+		List<User> rows = userRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.decode(after),
+				Pages.lookahead(size));
+		return CursorPage.of(rows, size, User::getId);
+	}
+
+	/**
+	 * Type-ahead search on the start of the name, case-insensitive unless asked
+	 * otherwise. Results are ordered by name.
+	 */
+	@GetMapping(path = "/search")
+	public List<User> search(@RequestParam(name = "q") String prefix,
+			@RequestParam(name = "caseSensitive", defaultValue = "false") boolean caseSensitive,
+			@RequestParam(name = "size", defaultValue = "10") Integer size) {
+		PageRequest limit = Pages.of(0, Math.min(size, MAX_SEARCH_SIZE));
+		if (caseSensitive) {
+			return userRepository.findByNameStartingWithOrderByNameAscIdAsc(prefix, limit);
+		}
+		return userRepository.findBySearchNameStartingWithOrderBySearchNameAscIdAsc(prefix.toLowerCase(Locale.ROOT), limit);
+	}
+
 	@GetMapping(path = "/findbyname/{name}")
 	public Iterable<User> getByName(@PathVariable(required = true, name = "name") String name) {
 		PageRequest pageRequest = PageRequest.of(0, 10);
@@ -56,7 +210,7 @@ public class UserController {
 	@GetMapping(path = "/findbyname/{name}/{page}/{size}")
 	public Iterable<User> getByNameWithPaginationSpecified(@PathVariable(required = true, name = "name") String name,
 			@PathVariable(required = true) Integer page, @PathVariable(required = true) Integer size) {
-		PageRequest pageRequest = PageRequest.of(page, size);
+		PageRequest pageRequest = Pages.of(page, size);
 		return userRepository.findByName(name, pageRequest);
 	}
 
@@ -66,21 +220,72 @@ public class UserController {
 	}
 
 	@PutMapping(path = "/{userId}", consumes = "application/json")
-	public User update(@PathVariable("userId") Long userId, @RequestBody User user) {
-		user.setId(userId);
-		return userRepository.save(user);
+	public ResponseEntity<User> update(@PathVariable("userId") Long userId, @RequestBody User user,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		User fromDb = userRepository.findById(userId).orElseThrow();
+		ETags.checkIfMatch(ifMatch, fromDb.getVersion());
+		String previousEmail = fromDb.getEmail();
+		fromDb.setName(user.getName());
+		fromDb.setEmail(user.getEmail());
+		checkBeforeWrite(fromDb, previousEmail);
+		User saved = userRepository.save(fromDb);
+		return ResponseEntity.ok().eTag(ETags.of(saved.getVersion())).body(saved);
 	}
 
+	/**
+	 * When write-behind is enabled, patches without {@code If-Match} are
+	 * coalesced with other patches to the same user, the response is sent once
+	 * the merged update committed. Each patch is checked against the user as
+	 * the patches before it left it, a rejected one fails alone.
+	 */
 	@PatchMapping(path = "/{userId}", consumes = "application/json")
-	public User patchUser(@PathVariable("userId") Long userId, @RequestBody User patch) {
+	public CompletableFuture<ResponseEntity<User>> patchUser(@PathVariable("userId") Long userId, @RequestBody User patch,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch == null && userWriteBehind.isEnabled()) {
+			return userWriteBehind.submit(userId, user -> {
+				User patched = new User(patch.getName() != null ? patch.getName() : user.getName(),
+						patch.getEmail() != null ? patch.getEmail() : user.getEmail());
+				checkBeforeWrite(patched, user.getEmail());
+				applyPatch(user, patch);
+			})
+					.thenApply(saved -> ResponseEntity.ok().eTag(ETags.of(saved.getVersion())).body(saved));
+		}
 		User user = userRepository.findById(userId).orElseThrow();
+		ETags.checkIfMatch(ifMatch, user.getVersion());
+		String previousEmail = user.getEmail();
+		applyPatch(user, patch);
+		checkBeforeWrite(user, previousEmail);
+		User saved = userRepository.save(user);
+		return CompletableFuture.completedFuture(ResponseEntity.ok().eTag(ETags.of(saved.getVersion())).body(saved));
+	}
+
+	private static void applyPatch(User user, User patch) {
 		if (patch.getEmail() != null) {
 			user.setEmail(patch.getEmail());
 		}
 		if (patch.getName() != null) {
 			user.setName(patch.getName());
 		}
-		return userRepository.save(user);
+	}
+
+	/**
+	 * Fails fast, before any statement runs: validates the user and probes the
+	 * email index when the email is new, so the common duplicate case does not
+	 * cost a failed insert and a rollback. The unique constraint still catches
+	 * concurrent writers.
+	 */
+	private void checkBeforeWrite(User user, String previousEmail) {
+		validate(user);
+		if (!user.getEmail().equals(previousEmail) && userRepository.existsByEmail(user.getEmail())) {
+			throw new DuplicateKeyException(User.EMAIL_UNIQUE_CONSTRAINT);
+		}
+	}
+
+	private void validate(User user) {
+		Set<ConstraintViolation<User>> violations = validator.validate(user);
+		if (!violations.isEmpty()) {
+			throw new ConstraintViolationException(violations);
+		}
 	}
 
 	@DeleteMapping(path = "/{userId}")
@@ -1,58 +1,145 @@
 package com.gagi.controller.advice;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.gagi.domain.InvalidRequestException;
+import com.gagi.domain.Project;
+import com.gagi.domain.User;
+
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 
 @ControllerAdvice
 public class CustomConstraintViolationHandler {
 
+	/** At most this many violations are rendered, the rest are only counted. */
+	static final int MAX_VIOLATIONS = 10;
+	private static final String SEPARATOR = "; ";
+
+	/**
+	 * Errors for the database constraints a client can run into, by constraint
+	 * name in lower case. The SQL error itself is never sent back.
+	 */
+	private static final Map<String, CustomError> CONSTRAINT_ERRORS = Map.of(
+			User.EMAIL_UNIQUE_CONSTRAINT.toLowerCase(Locale.ROOT),
+			new CustomError("USER_EMAIL_NOT_UNIQUE", User.EMAIL_UNIQUE_CONSTRAINT, null),
+			Project.NAME_UNIQUE_CONSTRAINT.toLowerCase(Locale.ROOT),
+			new CustomError("PROJECT_NAME_NOT_UNIQUE", Project.NAME_UNIQUE_CONSTRAINT, null),
+			Project.MEMBER_FOREIGN_KEY.toLowerCase(Locale.ROOT),
+			new CustomError("USER_IS_PROJECT_MEMBER", "The user is a member of a project", null));
+	private static final CustomError DATA_INTEGRITY_ERROR = new CustomError("DATA_INTEGRITY_VIOLATION",
+			"The request conflicts with existing data", null);
+
 	@ExceptionHandler(ConstraintViolationException.class)
 	@ResponseStatus(code = HttpStatus.BAD_REQUEST)
 	@ResponseBody
 	public CustomError handleException(ConstraintViolationException exception) {
-		String message = "";
-		for (ConstraintViolation<?> c : exception.getConstraintViolations()) {
-			message = message + c.getPropertyPath().toString() + " " + c.getMessage();
+		Set<ConstraintViolation<?>> violations = exception.getConstraintViolations();
+		int rendered = Math.min(violations.size(), MAX_VIOLATIONS);
+		List<Violation> details = new ArrayList<>(rendered);
+		StringBuilder message = new StringBuilder(rendered * 48);
+		for (ConstraintViolation<?> violation : violations) {
+			if (details.size() == rendered) {
+				message.append(SEPARATOR).append(violations.size() - rendered).append(" more");
+				break;
+			}
+			String field = violation.getPropertyPath().toString();
+			if (!details.isEmpty()) {
+				message.append(SEPARATOR);
+			}
+			message.append(field).append(' ').append(violation.getMessage());
+			details.add(new Violation(field, violation.getMessage()));
 		}
-		return new CustomError(message);
+		return new CustomError("VALIDATION_FAILED", message.toString(), details);
 	}
-	
+
 	@ExceptionHandler(DataIntegrityViolationException.class)
 	@ResponseStatus(code = HttpStatus.BAD_REQUEST)
 	@ResponseBody
 	public CustomError handleException(DataIntegrityViolationException exception) {
-		return new CustomError(exception.getMessage());
+		String constraint = constraintName(exception);
+		if (constraint != null) {
+			for (Map.Entry<String, CustomError> known : CONSTRAINT_ERRORS.entrySet()) {
+				if (constraint.contains(known.getKey())) {
+					return known.getValue();
+				}
+			}
+		}
+		return DATA_INTEGRITY_ERROR;
+	}
+
+	/**
+	 * The violated constraint as reported by Hibernate, or the message of an
+	 * exception raised before the statement ran, in lower case.
+	 */
+	private static String constraintName(DataIntegrityViolationException exception) {
+		String name = exception.getCause() instanceof org.hibernate.exception.ConstraintViolationException cause
+				? cause.getConstraintName()
+				: exception.getMessage();
+		return name == null ? null : name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Only the application's own parameter checks, other
+	 * {@code IllegalArgumentException}s are internal errors and their messages
+	 * are not sent back.
+	 */
+	@ExceptionHandler(InvalidRequestException.class)
+	@ResponseStatus(code = HttpStatus.BAD_REQUEST)
+	@ResponseBody
+	public CustomError handleException(InvalidRequestException exception) {
+		return new CustomError("INVALID_ARGUMENT", exception.getMessage(), null);
 	}
-	
+
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	@ResponseStatus(code = HttpStatus.PRECONDITION_FAILED)
+	@ResponseBody
+	public CustomError handleException(OptimisticLockingFailureException exception) {
+		return new CustomError("VERSION_MISMATCH", "The entity was modified by someone else, fetch it again and retry", null);
+	}
+
 	@ExceptionHandler(NoSuchElementException.class)
 	@ResponseStatus(code = HttpStatus.NOT_FOUND)
 	@ResponseBody
 	public CustomError handleException(NoSuchElementException exception) {
-		return new CustomError(exception.getMessage());
+		return new CustomError("NOT_FOUND", exception.getMessage(), null);
 	}
 
-	static class CustomError {
-		private String message;
-
-		public CustomError(String message) {
-			this.message = message;
-		}
+	/**
+	 * A write buffer is full or shutting down, the client should back off and
+	 * retry.
+	 */
+	@ExceptionHandler(RejectedExecutionException.class)
+	public ResponseEntity<CustomError> handleException(RejectedExecutionException exception) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+				.body(new CustomError("WRITES_BACKED_UP", exception.getMessage(), null));
+	}
 
-		public String getMessage() {
-			return message;
-		}
+	/**
+	 * Error payload: a stable code to branch on, a readable message and, for
+	 * validation errors, the violations per field.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public record CustomError(String code, String message, List<Violation> violations) {
+	}
 
-		public void setMessage(String message) {
-			this.message = message;
-		}
+	public record Violation(String field, String message) {
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.gagi.domain;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * A client supplied {@code Idempotency-Key} and the resource its request
+ * created. Written in the same transaction as the resource, so a key is only
+ * ever recorded for a write that committed.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at"))
+public class IdempotencyKey {
+
+	@Id
+	@Column(name = "idempotency_key")
+	private String key;
+	/** Digest of the request, to tell a retry from a different request reusing the key. */
+	private String fingerprint;
+	@Column(name = "resource_id")
+	private Long resourceId;
+	@Column(name = "created_at")
+	private Instant createdAt;
+
+	protected IdempotencyKey() {
+
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public Long getResourceId() {
+		return resourceId;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+}
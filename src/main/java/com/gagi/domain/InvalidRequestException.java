@@ -0,0 +1,15 @@
+package com.gagi.domain;
+
+/**
+ * A parameter or header of the client's request is out of range or malformed.
+ * Answered with 400 and the message, so the message must only describe the
+ * client's input.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidRequestException(String message) {
+		super(message);
+	}
+}
@@ -2,18 +2,40 @@ package com.gagi.domain;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import com.gagi.changes.ChangeFeedListener;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.ManyToMany;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = "name", name = Project.NAME_UNIQUE_CONSTRAINT))
+@EntityListeners(ChangeFeedListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Project {
 
+	public static final String NAME_UNIQUE_CONSTRAINT = "Project name must be unique";
+	public static final String MEMBER_FOREIGN_KEY = "fk_project_membership_user";
+
 	public Project() {}
 
 	public Project(String name, String description) {
@@ -30,12 +52,31 @@ public class Project {
 	@Id
 	@GeneratedValue(strategy = GenerationType.AUTO)
 	private long id;
-	@ManyToMany
-	private List<User> users = new ArrayList<>();
-	@Column(nullable = false, unique = true)
+	/**
+	 * The membership rows, only ever written by the membership statements. This
+	 * is the inverse side, so Hibernate never inserts or deletes rows through it
+	 * and joined_at and role survive any update of the project.
+	 */
+	@OneToMany(mappedBy = "project")
+	@JsonIgnore
+	private List<ProjectMembership> memberships = new ArrayList<>();
+	/** Members of a project that was not loaded by JPA, or as read from JSON. */
+	@Transient
+	private List<User> users;
+	@Column(nullable = false)
 	private String name;
 	@Column(nullable = true)
 	private String description;
+	/**
+	 * Number of {@link ProjectMembership} rows, kept in step by the membership
+	 * statements so counting members never loads the collection.
+	 */
+	@Column(name = "member_count", nullable = false)
+	@JsonProperty(access = Access.READ_ONLY)
+	private int memberCount;
+	@Version
+	@JsonIgnore
+	private long version;
 
 	public Long getId() {
 		return id;
@@ -45,8 +86,16 @@ public class Project {
 		this.id = id;
 	}
 
+	/**
+	 * The members, read through the memberships when those were loaded with the
+	 * project, otherwise left out. Setting them never changes who is a member.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
 	public List<User> getUsers() {
-		return users;
+		if (users != null || !Hibernate.isInitialized(memberships)) {
+			return users;
+		}
+		return memberships.stream().map(ProjectMembership::getUser).toList();
 	}
 
 	public void setUsers(List<User> users) {
@@ -69,9 +118,34 @@ public class Project {
 		this.description = description;
 	}
 
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	/**
+	 * Moves the count by the number of rows a membership statement inserted or
+	 * deleted.
+	 */
+	public void adjustMemberCount(int delta) {
+		memberCount += delta;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Identity is the id alone, so hashing a project never loads its members. A
+	 * project that is not saved yet only equals itself. The hash is the same for
+	 * every project, so it does not change when the id is assigned on persist.
+	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(description, id, name, users);
+		return Project.class.hashCode();
 	}
 
 	@Override
@@ -80,10 +154,9 @@ public class Project {
 			return true;
 		if (obj == null)
 			return false;
-		if (getClass() != obj.getClass())
+		if (Hibernate.getClass(this) != Hibernate.getClass(obj))
 			return false;
 		Project other = (Project) obj;
-		return Objects.equals(description, other.description) && id == other.id && Objects.equals(name, other.name)
-				&& Objects.equals(users, other.users);
+		return id != 0 && id == other.getId();
 	}
 }
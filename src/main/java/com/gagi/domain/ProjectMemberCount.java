@@ -0,0 +1,8 @@
+package com.gagi.domain;
+
+/**
+ * Member count of one project, read from the maintained
+ * {@code member_count} column.
+ */
+public record ProjectMemberCount(Long id, int memberCount) {
+}
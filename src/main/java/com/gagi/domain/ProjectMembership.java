@@ -0,0 +1,119 @@
+package com.gagi.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.Table;
+
+/**
+ * A user's membership of a project. The primary key serves lookups and pages by
+ * project, the reverse index those by user, so either direction is an index
+ * range scan. {@link Project#getUsers()} reads the same rows; they are only
+ * written by the membership statements and get the column defaults, and go
+ * with their project when it is deleted.
+ */
+@Entity
+@Table(name = ProjectMembership.TABLE, indexes = @Index(name = "idx_project_membership_user", columnList = "user_id, project_id"))
+public class ProjectMembership {
+
+	public static final String TABLE = "project_membership";
+
+	public enum Role {
+		MEMBER, OWNER
+	}
+
+	@EmbeddedId
+	private Id id;
+	@MapsId("projectId")
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "project_id")
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	@JsonIgnore
+	private Project project;
+	@MapsId("userId")
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "user_id", foreignKey = @ForeignKey(name = Project.MEMBER_FOREIGN_KEY))
+	@JsonIgnore
+	private User user;
+	@Column(name = "joined_at", nullable = false)
+	@ColumnDefault("current_timestamp")
+	private Instant joinedAt;
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	@ColumnDefault("'MEMBER'")
+	private Role role;
+
+	protected ProjectMembership() {
+
+	}
+
+	public Long getProjectId() {
+		return id.projectId;
+	}
+
+	public Long getUserId() {
+		return id.userId;
+	}
+
+	public User getUser() {
+		return user;
+	}
+
+	public Instant getJoinedAt() {
+		return joinedAt;
+	}
+
+	public Role getRole() {
+		return role;
+	}
+
+	@Embeddable
+	public static class Id implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Column(name = "project_id")
+		private Long projectId;
+		@Column(name = "user_id")
+		private Long userId;
+
+		protected Id() {
+
+		}
+
+		public Id(Long projectId, Long userId) {
+			this.projectId = projectId;
+			this.userId = userId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(projectId, userId);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Id other && Objects.equals(projectId, other.projectId)
+					&& Objects.equals(userId, other.userId);
+		}
+	}
+}
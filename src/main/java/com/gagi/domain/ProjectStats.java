@@ -0,0 +1,7 @@
+package com.gagi.domain;
+
+/**
+ * Totals over all projects, computed in a single aggregate query.
+ */
+public record ProjectStats(long projects, long memberships, int largestProject) {
+}
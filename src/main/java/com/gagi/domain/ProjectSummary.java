@@ -0,0 +1,12 @@
+package com.gagi.domain;
+
+/**
+ * Read-only view of a {@link Project} without its members, selected directly in
+ * SQL so listings never load the entity or touch the users association.
+ */
+public record ProjectSummary(Long id, String name, String description) {
+
+	public static ProjectSummary of(Project project) {
+		return new ProjectSummary(project.getId(), project.getName(), project.getDescription());
+	}
+}
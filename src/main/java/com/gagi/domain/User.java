@@ -1,28 +1,57 @@
 package com.gagi.domain;
 
+import java.util.Locale;
 import java.util.Objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gagi.changes.ChangeFeedListener;
+
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
 
 @Entity(name = "app_users")
-@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"email"}, name = "Email must be unique")})
+@EntityListeners(ChangeFeedListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"email"}, name = User.EMAIL_UNIQUE_CONSTRAINT)},
+		indexes = {@Index(name = "idx_app_users_name", columnList = "name"),
+				@Index(name = "idx_app_users_search_name", columnList = "search_name")})
 public class User {
 
+	public static final String EMAIL_UNIQUE_CONSTRAINT = "Email must be unique";
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "app_users_seq")
+	@SequenceGenerator(name = "app_users_seq", sequenceName = "app_users_seq", allocationSize = 50)
 	private long id;
 	@NotEmpty(message = "Name may not be null or empty")
 	private String name;
 	@NotEmpty(message = "Email may not be null or empty")
 	@Email
 	private String email;
+	/** Lower cased copy of the name, so case-insensitive prefix searches can use an index. */
+	@Column(name = "search_name")
+	private String searchName;
+	@Version
+	@JsonIgnore
+	private long version;
 
 	public User() {
 		
@@ -57,6 +86,20 @@ public class User {
 		this.email = email;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateSearchName() {
+		searchName = name == null ? null : name.toLowerCase(Locale.ROOT);
+	}
+
 	@Override
 	public String toString() {
 		return "User [id=" + id + ", name=" + name + ", email=" + email + "]";
@@ -0,0 +1,28 @@
+package com.gagi.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.gagi.domain.IdempotencyKey;
+
+public interface IdempotencyKeyRepository extends CrudRepository<IdempotencyKey, String> {
+
+	/**
+	 * A plain insert, {@code save} would look the assigned key up first. Fails on
+	 * the primary key when a concurrent request recorded the key already.
+	 */
+	@Modifying
+	@Query(value = "insert into idempotency_keys (idempotency_key, fingerprint, resource_id, created_at) values (:key, :fingerprint, :resourceId, :createdAt)", nativeQuery = true)
+	void insert(@Param("key") String key, @Param("fingerprint") String fingerprint,
+			@Param("resourceId") Long resourceId, @Param("createdAt") Instant createdAt);
+
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyKey k where k.createdAt < :cutoff")
+	int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
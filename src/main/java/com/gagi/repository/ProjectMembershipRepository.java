@@ -0,0 +1,17 @@
+package com.gagi.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.gagi.domain.ProjectMembership;
+
+/**
+ * Memberships by their primary key. Membership changes go through the
+ * statements of {@link ProjectRepository}, so they keep the project's version
+ * and member count in step; not exported by Data REST for the same reason.
+ */
+@Transactional(readOnly = true)
+@RepositoryRestResource(exported = false)
+public interface ProjectMembershipRepository extends CrudRepository<ProjectMembership, ProjectMembership.Id> {
+}
@@ -1,13 +1,153 @@
 package com.gagi.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gagi.domain.Project;
+import com.gagi.domain.ProjectMemberCount;
+import com.gagi.domain.ProjectMembership;
+import com.gagi.domain.ProjectStats;
+import com.gagi.domain.ProjectSummary;
+import com.gagi.domain.User;
+
+import jakarta.persistence.QueryHint;
 
-public interface ProjectRepository extends PagingAndSortingRepository<Project, Long>, CrudRepository<Project, Long>{
+/**
+ * Read-only by default, so query methods run in a read-only transaction and can
+ * be routed to a read replica, see {@code ReplicaRoutingDataSource}. Writes
+ * declare their own transaction.
+ */
+@Transactional(readOnly = true)
+public interface ProjectRepository extends PagingAndSortingRepository<Project, Long>, CrudRepository<Project, Long>, ProjectRepositoryCustom {
 
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	Project findByName(@Param("name") String name);
-	
+
+	/**
+	 * Reads just the version column, so conditional requests can be answered
+	 * without loading the entity.
+	 */
+	@Query("select p.version from Project p where p.id = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
+
+	/**
+	 * Loads the project together with its members in one query, for the
+	 * representations that include them.
+	 */
+	@EntityGraph(attributePaths = { "memberships", "memberships.user" })
+	Optional<Project> findWithUsersById(Long id);
+
+	@EntityGraph(attributePaths = { "memberships", "memberships.user" })
+	Optional<Project> findWithUsersByName(String name);
+
+	/**
+	 * A page of a project's members after the given user id, a range of the
+	 * membership primary key, without loading the project or its collection.
+	 */
+	@Query("select m.user from ProjectMembership m where m.id.projectId = :projectId and m.id.userId > :after order by m.id.userId")
+	List<User> findMembersAfter(@Param("projectId") Long projectId, @Param("after") Long after, Pageable pageable);
+
+	/**
+	 * A page of the projects a user is a member of, after the given project id,
+	 * read from the membership index by user.
+	 */
+	@Query("select new com.gagi.domain.ProjectSummary(p.id, p.name, p.description) from ProjectMembership m join m.project p "
+			+ "where m.id.userId = :userId and m.id.projectId > :after order by m.id.projectId")
+	List<ProjectSummary> findSummariesByMemberAfter(@Param("userId") Long userId, @Param("after") Long after,
+			Pageable pageable);
+
+	/**
+	 * Offset listing that selects only the summary columns. Returning a
+	 * {@code List} rather than a {@code Page} keeps Spring Data from issuing a
+	 * count query.
+	 */
+	@Query("select new com.gagi.domain.ProjectSummary(p.id, p.name, p.description) from Project p order by p.id")
+	List<ProjectSummary> findSummaries(Pageable pageable);
+
+	/**
+	 * Seek query for cursor listings: reads forward from the primary key index, so
+	 * the cost of a page does not depend on how deep it is and no count query runs.
+	 */
+	@Query("select new com.gagi.domain.ProjectSummary(p.id, p.name, p.description) from Project p where p.id > :id order by p.id")
+	List<ProjectSummary> findSummariesAfter(@Param("id") Long id, Pageable pageable);
+
+	/**
+	 * Streams every project off an open JDBC cursor. Must be consumed inside a
+	 * transaction and closed afterwards; entities are loaded read-only so they are
+	 * not snapshotted for dirty checking, and bypass the second-level cache so a
+	 * full scan does not evict the hot entries.
+	 */
+	@Query("select p from Project p order by p.id")
+	@QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE") })
+	Stream<Project> streamAll();
+
+	/**
+	 * Initializes the members of the given, already managed projects with a
+	 * single join query instead of one lazy load per project.
+	 */
+	@Query("select distinct p from Project p left join fetch p.memberships m left join fetch m.user where p.id in :ids")
+	@QueryHints({ @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE") })
+	List<Project> fetchUsers(@Param("ids") Collection<Long> ids);
+
+	@Query("select new com.gagi.domain.ProjectMemberCount(p.id, p.memberCount) from Project p where p.id in :ids order by p.id")
+	List<ProjectMemberCount> findMemberCounts(@Param("ids") Collection<Long> ids);
+
+	@Query("select new com.gagi.domain.ProjectStats(count(p), coalesce(sum(p.memberCount), 0), coalesce(max(p.memberCount), 0)) from Project p")
+	ProjectStats findStats();
+
+	/**
+	 * The existing users among {@code userIds} that are not members of the
+	 * project, i.e. the rows {@link #addMembers} would insert.
+	 */
+	@Query("select u.id from app_users u where u.id in :userIds and not exists "
+			+ "(select 1 from ProjectMembership m where m.id.projectId = :projectId and m.id.userId = u.id) order by u.id")
+	List<Long> findNonMemberIds(@Param("projectId") Long projectId, @Param("userIds") Collection<Long> userIds);
+
+	/**
+	 * The members of the project among {@code userIds}, i.e. the rows
+	 * {@link #removeMembers} would delete.
+	 */
+	@Query("select m.id.userId from ProjectMembership m where m.id.projectId = :projectId and m.id.userId in :userIds order by m.id.userId")
+	List<Long> findMemberIds(@Param("projectId") Long projectId, @Param("userIds") Collection<Long> userIds);
+
+	/**
+	 * Adds the existing users among {@code userIds} that are not members yet with a
+	 * single insert-select on the membership table, without loading the
+	 * collection. The new rows get the default role and join time. Returns the
+	 * number of rows inserted. Declaring the membership table as the query space
+	 * keeps Hibernate from invalidating every second-level cache region.
+	 */
+	@Transactional
+	@Modifying
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ProjectMembership.TABLE))
+	@Query(value = "insert into project_membership (project_id, user_id) select :projectId, u.id from app_users u "
+			+ "where u.id in :userIds and not exists "
+			+ "(select 1 from project_membership m where m.project_id = :projectId and m.user_id = u.id)", nativeQuery = true)
+	int addMembers(@Param("projectId") Long projectId, @Param("userIds") Collection<Long> userIds);
+
+	/**
+	 * Removes the given users from the project with a single delete by primary
+	 * key. Returns the number of rows deleted.
+	 */
+	@Transactional
+	@Modifying
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ProjectMembership.TABLE))
+	@Query(value = "delete from project_membership where project_id = :projectId and user_id in :userIds", nativeQuery = true)
+	int removeMembers(@Param("projectId") Long projectId, @Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,28 @@
+package com.gagi.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Pageable;
+
+import com.gagi.domain.InvalidRequestException;
+
+public interface ProjectRepositoryCustom {
+
+	/**
+	 * Columns that can be requested from {@link #findFields}, in the order they
+	 * are returned.
+	 */
+	List<String> SELECTABLE_FIELDS = List.of("id", "name", "description");
+
+	/**
+	 * Selects only the requested columns of the projects with an id greater than
+	 * {@code afterId}, ordered by id. The id is always selected since it is the
+	 * key clients page and look up by.
+	 *
+	 * @throws InvalidRequestException if a field is not one of
+	 *                                  {@link #SELECTABLE_FIELDS}
+	 */
+	List<Map<String, Object>> findFields(Collection<String> fields, long afterId, Pageable pageable);
+}
@@ -0,0 +1,56 @@
+package com.gagi.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+
+import com.gagi.domain.InvalidRequestException;
+import com.gagi.domain.Project;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+class ProjectRepositoryImpl implements ProjectRepositoryCustom {
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Override
+	public List<Map<String, Object>> findFields(Collection<String> fields, long afterId, Pageable pageable) {
+		for (String field : fields) {
+			if (!SELECTABLE_FIELDS.contains(field)) {
+				throw new InvalidRequestException("Unknown field: " + field + ", expected one of " + SELECTABLE_FIELDS);
+			}
+		}
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<Project> project = query.from(Project.class);
+		List<String> selected = SELECTABLE_FIELDS.stream().filter(f -> f.equals("id") || fields.contains(f)).toList();
+		List<Selection<?>> selections = new ArrayList<>(selected.size());
+		for (String field : selected) {
+			selections.add(project.get(field).alias(field));
+		}
+		query.multiselect(selections).where(cb.greaterThan(project.get("id"), afterId)).orderBy(cb.asc(project.get("id")));
+
+		List<Tuple> tuples = entityManager.createQuery(query).setFirstResult((int) pageable.getOffset())
+				.setMaxResults(pageable.getPageSize()).getResultList();
+		List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+		for (Tuple tuple : tuples) {
+			Map<String, Object> row = new LinkedHashMap<>(selected.size() * 2);
+			for (String field : selected) {
+				row.put(field, tuple.get(field));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+}
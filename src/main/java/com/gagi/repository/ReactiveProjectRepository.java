@@ -0,0 +1,85 @@
+package com.gagi.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import com.gagi.domain.Project;
+import com.gagi.domain.ProjectSummary;
+
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking reads of projects over R2DBC, see {@link ReactiveUserRepository}.
+ * A single project is returned with its members, listings return summaries.
+ */
+@Repository
+public class ReactiveProjectRepository {
+
+	private static final String COLUMNS = "p.id, p.name, p.description, p.version";
+	private static final String SUMMARY_COLUMNS = "p.id, p.name, p.description";
+
+	@Autowired
+	DatabaseClient databaseClient;
+
+	public Mono<Project> findById(Long id) {
+		return withMembers(databaseClient.sql("select " + COLUMNS + " from project p where p.id = :id")
+				.bind("id", id)
+				.map(ReactiveProjectRepository::toProject)
+				.one());
+	}
+
+	public Mono<Project> findByName(String name) {
+		return withMembers(databaseClient.sql("select " + COLUMNS + " from project p where p.name = :name")
+				.bind("name", name)
+				.map(ReactiveProjectRepository::toProject)
+				.one());
+	}
+
+	public Flux<ProjectSummary> findSummaries(Pageable pageable) {
+		return databaseClient.sql("select " + SUMMARY_COLUMNS + " from project p order by p.id limit :limit offset :offset")
+				.bind("limit", pageable.getPageSize())
+				.bind("offset", pageable.getOffset())
+				.map(ReactiveProjectRepository::toSummary)
+				.all();
+	}
+
+	/**
+	 * Summaries of every project in id order, pulled on demand like
+	 * {@link ReactiveUserRepository#streamAll()}.
+	 */
+	public Flux<ProjectSummary> streamSummaries() {
+		return databaseClient.sql("select " + SUMMARY_COLUMNS + " from project p order by p.id")
+				.map(ReactiveProjectRepository::toSummary)
+				.all()
+				.limitRate(ReactiveUserRepository.STREAM_PREFETCH);
+	}
+
+	private Mono<Project> withMembers(Mono<Project> project) {
+		return project.flatMap(p -> databaseClient.sql("select " + ReactiveUserRepository.COLUMNS
+				+ " from app_users u join project_membership m on m.user_id = u.id where m.project_id = :projectId order by u.id")
+				.bind("projectId", p.getId())
+				.map(ReactiveUserRepository::toUser)
+				.all()
+				.collectList()
+				.map(users -> {
+					p.setUsers(users);
+					return p;
+				}));
+	}
+
+	private static Project toProject(Readable row) {
+		Project project = new Project(row.get("id", Long.class), row.get("name", String.class),
+				row.get("description", String.class));
+		project.setVersion(row.get("version", Long.class));
+		return project;
+	}
+
+	private static ProjectSummary toSummary(Readable row) {
+		return new ProjectSummary(row.get("id", Long.class), row.get("name", String.class),
+				row.get("description", String.class));
+	}
+}
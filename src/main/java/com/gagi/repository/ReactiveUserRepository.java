@@ -0,0 +1,79 @@
+package com.gagi.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import com.gagi.domain.User;
+
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking reads of users over R2DBC, against the table the {@link User}
+ * entity is mapped to. Rows bypass the persistence context and the second-level
+ * cache.
+ */
+@Repository
+public class ReactiveUserRepository {
+
+	static final String COLUMNS = "u.id, u.name, u.email, u.version";
+	/** Rows requested from the driver at a time when streaming. */
+	static final int STREAM_PREFETCH = 256;
+
+	@Autowired
+	DatabaseClient databaseClient;
+
+	public Mono<User> findById(Long id) {
+		return databaseClient.sql("select " + COLUMNS + " from app_users u where u.id = :id")
+				.bind("id", id)
+				.map(ReactiveUserRepository::toUser)
+				.one();
+	}
+
+	public Mono<User> findByEmail(String email) {
+		return databaseClient.sql("select " + COLUMNS + " from app_users u where u.email = :email")
+				.bind("email", email)
+				.map(ReactiveUserRepository::toUser)
+				.one();
+	}
+
+	public Flux<User> findByName(String name, Pageable pageable) {
+		return databaseClient.sql("select " + COLUMNS + " from app_users u where u.name = :name"
+				+ " order by u.id limit :limit offset :offset")
+				.bind("name", name)
+				.bind("limit", pageable.getPageSize())
+				.bind("offset", pageable.getOffset())
+				.map(ReactiveUserRepository::toUser)
+				.all();
+	}
+
+	public Flux<User> findAll(Pageable pageable) {
+		return databaseClient.sql("select " + COLUMNS + " from app_users u order by u.id limit :limit offset :offset")
+				.bind("limit", pageable.getPageSize())
+				.bind("offset", pageable.getOffset())
+				.map(ReactiveUserRepository::toUser)
+				.all();
+	}
+
+	/**
+	 * Every user in id order. Rows are pulled from the driver as the subscriber
+	 * asks for them, so a slow consumer holds back the query instead of
+	 * buffering the table.
+	 */
+	public Flux<User> streamAll() {
+		return databaseClient.sql("select " + COLUMNS + " from app_users u order by u.id")
+				.map(ReactiveUserRepository::toUser)
+				.all()
+				.limitRate(STREAM_PREFETCH);
+	}
+
+	static User toUser(Readable row) {
+		User user = new User(row.get("name", String.class), row.get("email", String.class));
+		user.setId(row.get("id", Long.class));
+		user.setVersion(row.get("version", Long.class));
+		return user;
+	}
+}
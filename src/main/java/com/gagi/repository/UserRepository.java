@@ -1,17 +1,66 @@
 package com.gagi.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gagi.domain.User;
 
-public interface UserRepository extends PagingAndSortingRepository<User, Long>, CrudRepository<User, Long>{
+import jakarta.persistence.QueryHint;
+
+/**
+ * Read-only by default, so query methods run in a read-only transaction and can
+ * be routed to a read replica, see {@code ReplicaRoutingDataSource}. Writes
+ * declare their own transaction.
+ */
+@Transactional(readOnly = true)
+public interface UserRepository extends PagingAndSortingRepository<User, Long>, CrudRepository<User, Long>, UserRepositoryCustom {
 
 	List<User> findByName(@Param("name") String name, Pageable pageable);
+
+	/**
+	 * Prefix searches for type-ahead, both are range scans on an index: the
+	 * case-insensitive one on the lower cased {@code searchName} column and the
+	 * exact one on {@code name}. Callers lower case the prefix for the former.
+	 */
+	List<User> findBySearchNameStartingWithOrderBySearchNameAscIdAsc(String prefix, Pageable pageable);
+
+	List<User> findByNameStartingWithOrderByNameAscIdAsc(String prefix, Pageable pageable);
 	
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	User findByEmail(@Param("email") String email);
+
+	/**
+	 * Seek query for cursor listings, see
+	 * {@link ProjectRepository#findSummariesAfter(Long, Pageable)}.
+	 */
+	List<User> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Pageable pageable);
+
+	/**
+	 * Reads just the version column, so conditional requests can be answered
+	 * without loading the entity.
+	 */
+	@Query("select u.version from app_users u where u.id = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
+
+	/**
+	 * Probes the unique email index, so a duplicate is turned away before an
+	 * insert fails and rolls back. Does not flush, so probing while other changes
+	 * are pending, as the write-behind buffer does, writes nothing early; the
+	 * unique constraint still catches pending duplicates.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+	boolean existsByEmail(String email);
+
+	@Query("select u.email from app_users u where u.email in :emails")
+	List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
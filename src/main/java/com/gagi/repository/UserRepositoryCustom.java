@@ -0,0 +1,22 @@
+package com.gagi.repository;
+
+import com.gagi.domain.User;
+
+public interface UserRepositoryCustom {
+
+	/**
+	 * Inserts the user with {@code email} or renames the existing one, in a single
+	 * statement. The row is only written when the name actually changes, so
+	 * repeating the same upsert is a no-op.
+	 *
+	 * @return the row as written, detached, and what the upsert did to it
+	 */
+	Upserted upsertByEmail(String email, String name);
+
+	/**
+	 * @param inserted the row is new
+	 * @param changed  the row was inserted or its name changed
+	 */
+	record Upserted(User user, boolean inserted, boolean changed) {
+	}
+}
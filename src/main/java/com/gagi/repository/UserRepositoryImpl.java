@@ -0,0 +1,88 @@
+package com.gagi.repository;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.gagi.domain.User;
+
+import jakarta.persistence.EntityManager;
+
+class UserRepositoryImpl implements UserRepositoryCustom {
+
+	/**
+	 * H2's MERGE with a delta table: the updated or inserted row is returned by
+	 * the same round-trip that writes it. A row with the same name is not
+	 * touched and nothing is returned for it. An update always bumps the
+	 * version, so a returned row at version 0 was inserted. A new row takes a
+	 * whole value of {@code app_users_seq}, which Hibernate's pooled optimizer
+	 * then never hands out, so the ids cannot collide.
+	 */
+	private static final String UPSERT_BY_EMAIL = """
+			select id, name, email, version from final table (
+				merge into app_users u
+				using (values (cast(:email as varchar), cast(:name as varchar), cast(:searchName as varchar))) s(email, name, search_name)
+				on u.email = s.email
+				when matched and u.name <> s.name then update set name = s.name, search_name = s.search_name,
+					version = u.version + 1
+				when not matched then insert (id, email, name, search_name, version)
+					values (next value for app_users_seq, s.email, s.name, s.search_name, 0))
+			""";
+
+	private static final String FIND_BY_EMAIL = "select id, name, email, version from app_users where email = :email";
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Override
+	@Transactional
+	public Upserted upsertByEmail(String email, String name) {
+		List<?> written = entityManager.createNativeQuery(UPSERT_BY_EMAIL)
+				.setParameter("email", email)
+				.setParameter("name", name)
+				.setParameter("searchName", name.toLowerCase(Locale.ROOT))
+				.getResultList();
+		if (written.isEmpty()) {
+			// the name was the same already, the row is as it was
+			return new Upserted(toUser((Object[]) entityManager.createNativeQuery(FIND_BY_EMAIL)
+					.setParameter("email", email).getSingleResult()), false, false);
+		}
+		User user = toUser((Object[]) written.get(0));
+		evictAfterWrite(user.getId());
+		return new Upserted(user, user.getVersion() == 0, true);
+	}
+
+	private static User toUser(Object[] row) {
+		User user = new User((String) row[1], (String) row[2]);
+		user.setId(((Number) row[0]).longValue());
+		user.setVersion(((Number) row[3]).longValue());
+		return user;
+	}
+
+	/**
+	 * The statement reads like a query to Hibernate, so it does not invalidate
+	 * anything itself. Evicts the user's entry and the cached query results, which
+	 * may hold the email as not found, now and once more after the transaction
+	 * ended, in case a concurrent read cached the old row in between.
+	 */
+	private void evictAfterWrite(Long id) {
+		Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+		Runnable evict = () -> {
+			cache.evictEntityData(User.class, id);
+			cache.evictDefaultQueryRegion();
+		};
+		evict.run();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				evict.run();
+			}
+		});
+	}
+}
@@ -0,0 +1,4 @@
+package com.gagi.search;
+
+public record ProjectSearchHit(Long id, String name, String description, float score) {
+}
@@ -0,0 +1,206 @@
+package com.gagi.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import com.gagi.domain.InvalidRequestException;
+import com.gagi.domain.Project;
+import com.gagi.domain.ProjectSummary;
+import com.gagi.repository.ProjectRepository;
+
+/**
+ * Lucene full-text index over project names and descriptions. It is kept up to
+ * date by {@code ProjectController} on every save, update and delete, and
+ * rebuilt from the database in the background after startup. Until the rebuild
+ * is done searches only see the projects indexed so far.
+ * <p>
+ * The index lives in memory unless {@code app.search.index-dir} names a
+ * directory, which only saves memory as the index is rebuilt on every start.
+ */
+@Component
+public class ProjectSearchIndex implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(ProjectSearchIndex.class);
+	private static final String ID = "id";
+	private static final String NAME = "name";
+	private static final String DESCRIPTION = "description";
+	private static final int REBUILD_BATCH_SIZE = 1000;
+
+	@Autowired
+	ProjectRepository projectRepository;
+	@Autowired
+	TaskExecutor taskExecutor;
+
+	private final Directory directory;
+	private final StandardAnalyzer analyzer = new StandardAnalyzer();
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+	/** Ids written incrementally while a rebuild runs, the rebuild must not overwrite them with older rows. */
+	private final Set<Long> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+	private volatile boolean rebuilding;
+
+	public ProjectSearchIndex(@Value("${app.search.index-dir:}") String indexDir) throws IOException {
+		directory = indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir));
+		writer = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+		searcherManager = new SearcherManager(writer, null);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildInBackground() {
+		taskExecutor.execute(this::rebuild);
+	}
+
+	void rebuild() {
+		rebuilding = true;
+		long started = System.currentTimeMillis();
+		int count = 0;
+		try {
+			List<ProjectSummary> batch = projectRepository.findSummariesAfter(0L, PageRequest.ofSize(REBUILD_BATCH_SIZE));
+			while (!batch.isEmpty()) {
+				for (ProjectSummary project : batch) {
+					synchronized (touchedDuringRebuild) {
+						if (!touchedDuringRebuild.contains(project.id())) {
+							write(project.id(), project.name(), project.description());
+						}
+					}
+				}
+				count += batch.size();
+				searcherManager.maybeRefresh();
+				batch = projectRepository.findSummariesAfter(batch.get(batch.size() - 1).id(),
+						PageRequest.ofSize(REBUILD_BATCH_SIZE));
+			}
+			writer.commit();
+			searcherManager.maybeRefresh();
+			log.info("Indexed {} projects in {} ms", count, System.currentTimeMillis() - started);
+		} catch (IOException | RuntimeException e) {
+			log.error("Rebuilding the project search index failed after {} projects", count, e);
+		} finally {
+			rebuilding = false;
+			touchedDuringRebuild.clear();
+		}
+	}
+
+	public void index(Project project) {
+		try {
+			synchronized (touchedDuringRebuild) {
+				touch(project.getId());
+				write(project.getId(), project.getName(), project.getDescription());
+			}
+			searcherManager.maybeRefreshBlocking();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void remove(Long projectId) {
+		try {
+			synchronized (touchedDuringRebuild) {
+				touch(projectId);
+				writer.deleteDocuments(new Term(ID, projectId.toString()));
+			}
+			searcherManager.maybeRefreshBlocking();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Ranked search in Lucene query syntax over name and description, name
+	 * matches weigh twice as much. A query that does not parse, or a page whose
+	 * end is past {@code Integer.MAX_VALUE} hits, is rejected with an
+	 * {@link InvalidRequestException}.
+	 */
+	public List<ProjectSearchHit> search(String text, Pageable pageable) {
+		Query query;
+		try {
+			query = new MultiFieldQueryParser(new String[] { NAME, DESCRIPTION }, analyzer, Map.of(NAME, 2f, DESCRIPTION, 1f))
+					.parse(text);
+		} catch (ParseException e) {
+			throw new InvalidRequestException("Invalid search query: " + text);
+		}
+		// Lucene collects every hit up to the end of the page, which has to fit an int
+		int end;
+		try {
+			end = Math.toIntExact(pageable.getOffset() + pageable.getPageSize());
+		} catch (ArithmeticException e) {
+			throw new InvalidRequestException("page is too deep to search");
+		}
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				TopDocs top = searcher.search(query, end);
+				List<ProjectSearchHit> hits = new ArrayList<>(pageable.getPageSize());
+				for (int i = end - pageable.getPageSize(); i < top.scoreDocs.length; i++) {
+					ScoreDoc scoreDoc = top.scoreDocs[i];
+					Document document = searcher.storedFields().document(scoreDoc.doc);
+					hits.add(new ProjectSearchHit(Long.valueOf(document.get(ID)), document.get(NAME),
+							document.get(DESCRIPTION), scoreDoc.score));
+				}
+				return hits;
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void touch(Long projectId) {
+		if (rebuilding) {
+			touchedDuringRebuild.add(projectId);
+		}
+	}
+
+	private void write(Long id, String name, String description) throws IOException {
+		Document document = new Document();
+		document.add(new StringField(ID, id.toString(), Field.Store.YES));
+		document.add(new TextField(NAME, name, Field.Store.YES));
+		if (description != null) {
+			document.add(new TextField(DESCRIPTION, description, Field.Store.YES));
+		}
+		writer.updateDocument(new Term(ID, id.toString()), document);
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		searcherManager.close();
+		writer.close();
+		directory.close();
+	}
+}
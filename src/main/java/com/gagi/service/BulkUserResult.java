@@ -0,0 +1,22 @@
+package com.gagi.service;
+
+import java.util.List;
+
+/**
+ * Outcome of one record of a bulk user import. {@code index} is the zero based
+ * position of the record in the request body.
+ */
+public record BulkUserResult(int index, Long id, Status status, List<String> errors) {
+
+	public enum Status {
+		CREATED, INVALID, DUPLICATE, FAILED
+	}
+
+	static BulkUserResult created(int index, long id) {
+		return new BulkUserResult(index, id, Status.CREATED, List.of());
+	}
+
+	static BulkUserResult rejected(int index, Status status, List<String> errors) {
+		return new BulkUserResult(index, null, status, errors);
+	}
+}
@@ -0,0 +1,96 @@
+package com.gagi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gagi.domain.IdempotencyKey;
+import com.gagi.domain.InvalidRequestException;
+import com.gagi.repository.IdempotencyKeyRepository;
+
+/**
+ * Makes create requests safe to retry. The first request with a key runs and
+ * records the id of what it created in the same transaction, a retry with the
+ * same key and body gets that resource back instead of creating another one.
+ * Keys are forgotten after {@code app.idempotency.retention}.
+ */
+@Service
+public class IdempotencyService {
+
+	public static final String HEADER = "Idempotency-Key";
+	static final int MAX_KEY_LENGTH = 255;
+
+	@Autowired
+	IdempotencyKeyRepository idempotencyKeyRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Value("${app.idempotency.retention:PT24H}")
+	Duration retention;
+
+	/**
+	 * Runs {@code create} once per key.
+	 *
+	 * @param request identifies the request body, a key reused for a different
+	 *                body is rejected
+	 * @param idOf    the id recorded for the created resource
+	 * @param load    loads the recorded resource when replaying
+	 * @throws InvalidRequestException if the key is too long or was used for a
+	 *                                  different request
+	 */
+	public <T> T execute(String key, String request, Supplier<T> create, Function<T, Long> idOf,
+			Function<Long, T> load) {
+		if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+			throw new InvalidRequestException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+		}
+		String fingerprint = fingerprint(request);
+		Optional<IdempotencyKey> recorded = idempotencyKeyRepository.findById(key);
+		if (recorded.isPresent()) {
+			return replay(recorded.get(), fingerprint, load);
+		}
+		try {
+			return transactionTemplate.execute(status -> {
+				T created = create.get();
+				idempotencyKeyRepository.insert(key, fingerprint, idOf.apply(created), Instant.now());
+				return created;
+			});
+		} catch (DataIntegrityViolationException e) {
+			// a concurrent request with the same key committed first, either the
+			// key or the resource itself collided
+			return idempotencyKeyRepository.findById(key).map(winner -> replay(winner, fingerprint, load))
+					.orElseThrow(() -> e);
+		}
+	}
+
+	private static <T> T replay(IdempotencyKey recorded, String fingerprint, Function<Long, T> load) {
+		if (!recorded.getFingerprint().equals(fingerprint)) {
+			throw new InvalidRequestException(HEADER + " was already used for a different request");
+		}
+		return load.apply(recorded.getResourceId());
+	}
+
+	@Scheduled(fixedDelayString = "${app.idempotency.purge-interval:PT1H}")
+	public void purgeExpired() {
+		idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(retention));
+	}
+
+	private static String fingerprint(String request) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
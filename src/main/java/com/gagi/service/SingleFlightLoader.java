@@ -0,0 +1,92 @@
+package com.gagi.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Loads entities by id in batches and lets concurrent callers share a load: an
+ * id that another request is loading right now from the same source is waited
+ * for instead of read again. Nothing is kept once a load finished, but a
+ * shared load may have started before the caller did, so a caller can get an
+ * entity as it was slightly before its call. Callers that must see their own
+ * writes are not given a source and always load alone.
+ */
+public class SingleFlightLoader<T> {
+
+	private final Function<List<Long>, List<T>> batchLoad;
+	private final Supplier<Object> source;
+	private final Map<Flight, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * @param batchLoad loads the given ids in one go and returns the entities in
+	 *                  the same order, {@code null} for ids that do not exist
+	 * @param source    the source the batch loader reads from when called on the
+	 *                  current thread, only loads from the same source are
+	 *                  shared; {@code null} when the caller must not share
+	 */
+	public SingleFlightLoader(Function<List<Long>, List<T>> batchLoad, Supplier<Object> source) {
+		this.batchLoad = batchLoad;
+		this.source = source;
+	}
+
+	/**
+	 * Returns the entities in the order of {@code ids}, with {@code null} for the
+	 * ones that do not exist. The ids no one else is loading are loaded with one
+	 * call of the batch loader, before waiting for the others, so two callers
+	 * never wait on each other.
+	 */
+	public List<T> getAll(List<Long> ids) {
+		Object from = source.get();
+		Map<Long, CompletableFuture<T>> futures = new LinkedHashMap<>(ids.size() * 2);
+		List<Long> owned = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			if (!futures.containsKey(id)) {
+				CompletableFuture<T> future = new CompletableFuture<>();
+				CompletableFuture<T> shared = from == null ? null : inFlight.putIfAbsent(new Flight(id, from), future);
+				if (shared == null) {
+					owned.add(id);
+					futures.put(id, future);
+				} else {
+					futures.put(id, shared);
+				}
+			}
+		}
+		if (!owned.isEmpty()) {
+			load(owned, futures, from);
+		}
+		List<T> result = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			try {
+				result.add(futures.get(id).join());
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+		return result;
+	}
+
+	private void load(List<Long> owned, Map<Long, CompletableFuture<T>> futures, Object from) {
+		try {
+			List<T> loaded = batchLoad.apply(owned);
+			for (int i = 0; i < owned.size(); i++) {
+				futures.get(owned.get(i)).complete(loaded.get(i));
+			}
+		} catch (RuntimeException e) {
+			owned.forEach(id -> futures.get(id).completeExceptionally(e));
+		} finally {
+			if (from != null) {
+				owned.forEach(id -> inFlight.remove(new Flight(id, from), futures.get(id)));
+			}
+		}
+	}
+
+	private record Flight(Long id, Object source) {
+	}
+}
@@ -0,0 +1,143 @@
+package com.gagi.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gagi.domain.User;
+import com.gagi.repository.UserRepository;
+import com.gagi.service.BulkUserResult.Status;
+
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Imports users in chunks. Every chunk is validated and checked for duplicate
+ * emails up front and then inserted in its own transaction, which lets Hibernate
+ * send the inserts as JDBC batches and take ids from the pooled
+ * {@code app_users_seq} instead of one round-trip per row.
+ */
+@Service
+public class UserImportService {
+
+	static final int CHUNK_SIZE = 500;
+
+	@Autowired
+	UserRepository userRepository;
+	@Autowired
+	Validator validator;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	EntityManager entityManager;
+
+	/**
+	 * Consumes {@code users} lazily, so a streamed request body is never held in
+	 * memory as a whole. A record that cannot be read ends the import; everything
+	 * before it has already been committed and is reported.
+	 */
+	public List<BulkUserResult> importUsers(Iterator<User> users) {
+		List<BulkUserResult> results = new ArrayList<>();
+		Set<String> seenEmails = new HashSet<>();
+		List<User> chunk = new ArrayList<>(CHUNK_SIZE);
+		List<Integer> indexes = new ArrayList<>(CHUNK_SIZE);
+		int index = 0;
+		while (true) {
+			User user;
+			try {
+				if (!users.hasNext()) {
+					break;
+				}
+				user = users.next();
+			} catch (RuntimeException e) {
+				results.add(BulkUserResult.rejected(index, Status.INVALID, List.of("Malformed user record")));
+				break;
+			}
+			chunk.add(user);
+			indexes.add(index++);
+			if (chunk.size() == CHUNK_SIZE) {
+				importChunk(chunk, indexes, seenEmails, results);
+			}
+		}
+		importChunk(chunk, indexes, seenEmails, results);
+		results.sort((a, b) -> Integer.compare(a.index(), b.index()));
+		return results;
+	}
+
+	private void importChunk(List<User> chunk, List<Integer> indexes, Set<String> seenEmails,
+			List<BulkUserResult> results) {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		List<User> valid = new ArrayList<>(chunk.size());
+		List<Integer> validIndexes = new ArrayList<>(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			User user = chunk.get(i);
+			Set<ConstraintViolation<User>> violations = validator.validate(user);
+			if (!violations.isEmpty()) {
+				List<String> errors = new ArrayList<>(violations.size());
+				for (ConstraintViolation<User> c : violations) {
+					errors.add(c.getPropertyPath() + " " + c.getMessage());
+				}
+				results.add(BulkUserResult.rejected(indexes.get(i), Status.INVALID, errors));
+			} else if (!seenEmails.add(user.getEmail())) {
+				results.add(BulkUserResult.rejected(indexes.get(i), Status.DUPLICATE, List.of("Email must be unique")));
+			} else {
+				user.setId(0L);
+				valid.add(user);
+				validIndexes.add(indexes.get(i));
+			}
+		}
+		Set<String> existing = new HashSet<>(userRepository.findExistingEmails(valid.stream().map(User::getEmail).toList()));
+		List<User> toInsert = new ArrayList<>(valid.size());
+		List<Integer> toInsertIndexes = new ArrayList<>(valid.size());
+		for (int i = 0; i < valid.size(); i++) {
+			if (existing.contains(valid.get(i).getEmail())) {
+				results.add(BulkUserResult.rejected(validIndexes.get(i), Status.DUPLICATE, List.of("Email must be unique")));
+			} else {
+				toInsert.add(valid.get(i));
+				toInsertIndexes.add(validIndexes.get(i));
+			}
+		}
+		insert(toInsert, toInsertIndexes, results);
+		chunk.clear();
+		indexes.clear();
+	}
+
+	private void insert(List<User> users, List<Integer> indexes, List<BulkUserResult> results) {
+		if (users.isEmpty()) {
+			return;
+		}
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				// a bulk load should not push the hot users out of the second-level cache
+				entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+				userRepository.saveAll(users);
+			});
+			for (int i = 0; i < users.size(); i++) {
+				results.add(BulkUserResult.created(indexes.get(i), users.get(i).getId()));
+			}
+		} catch (DataIntegrityViolationException e) {
+			// lost a race with a concurrent insert, find the offending rows one by one
+			for (int i = 0; i < users.size(); i++) {
+				User user = users.get(i);
+				user.setId(0L);
+				try {
+					results.add(BulkUserResult.created(indexes.get(i), userRepository.save(user).getId()));
+				} catch (DataIntegrityViolationException rowFailure) {
+					results.add(BulkUserResult.rejected(indexes.get(i), Status.FAILED, List.of("Email must be unique")));
+				}
+			}
+		}
+	}
+}
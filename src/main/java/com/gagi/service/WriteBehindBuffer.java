@@ -0,0 +1,186 @@
+package com.gagi.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Coalesces bursts of changes to the same rows. Changes submitted within
+ * {@code window} are applied in order to one loaded copy of each entity and
+ * written in a single transaction, so the JDBC driver gets one select and a
+ * batch of updates instead of a read and a write per request.
+ * <p>
+ * A change is acknowledged only when the transaction holding it committed, a
+ * future that completes is as durable as a synchronous save. What is still
+ * queued on shutdown is flushed before the repositories go away.
+ */
+public class WriteBehindBuffer<T> implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+	private final String name;
+	private final CrudRepository<T, Long> repository;
+	private final Function<T, Long> idOf;
+	private final TransactionTemplate transactionTemplate;
+	private final boolean enabled;
+	private final Duration window;
+	private final int maxQueued;
+	private final ScheduledThreadPoolExecutor flusher;
+
+	private Map<Long, Pending<T>> pending = new LinkedHashMap<>();
+	private int queued;
+	private boolean closed;
+
+	public WriteBehindBuffer(String name, CrudRepository<T, Long> repository, Function<T, Long> idOf,
+			TransactionTemplate transactionTemplate, boolean enabled, Duration window, int maxQueued) {
+		this.name = name;
+		this.repository = repository;
+		this.idOf = idOf;
+		this.transactionTemplate = transactionTemplate;
+		this.enabled = enabled;
+		this.window = window;
+		this.maxQueued = maxQueued;
+		this.flusher = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, name + "-write-behind"));
+		// on shutdown destroy() flushes itself, scheduled flushes need not wait out their window
+		this.flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Queues {@code change} for the entity with {@code id}. The future completes
+	 * with the saved entity, or with {@link NoSuchElementException} when there is
+	 * no such entity. A change that throws is rejected on its own: its future
+	 * completes with the exception and the other changes are still written, so a
+	 * change has to run its checks before it modifies the entity.
+	 *
+	 * @throws RejectedExecutionException when {@code maxQueued} changes are
+	 *                                    waiting already or the buffer is closed
+	 */
+	public CompletableFuture<T> submit(Long id, Consumer<T> change) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		synchronized (this) {
+			if (closed) {
+				throw new RejectedExecutionException("The " + name + " write buffer is shut down");
+			}
+			if (queued >= maxQueued) {
+				throw new RejectedExecutionException("The " + name + " write buffer is full");
+			}
+			if (pending.isEmpty()) {
+				flusher.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+			}
+			Pending<T> entry = pending.computeIfAbsent(id, key -> new Pending<>());
+			entry.changes.add(change);
+			entry.futures.add(future);
+			queued++;
+		}
+		return future;
+	}
+
+	/** Changes submitted and not written yet. */
+	public synchronized int queued() {
+		return queued;
+	}
+
+	/**
+	 * Writes what is queued now, without waiting for the window to end. Runs on
+	 * the calling thread.
+	 */
+	public void flush() {
+		Map<Long, Pending<T>> batch;
+		synchronized (this) {
+			batch = pending;
+			pending = new LinkedHashMap<>();
+			queued = 0;
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			Map<CompletableFuture<T>, RuntimeException> rejected = new HashMap<>();
+			complete(batch, transactionTemplate.execute(status -> apply(batch, rejected)), rejected);
+		} catch (RuntimeException e) {
+			// one failing row rolls the whole batch back, write the rows one by one
+			// so only the requests for that row fail
+			log.debug("Batched {} write failed, retrying row by row", name, e);
+			for (Map.Entry<Long, Pending<T>> entry : batch.entrySet()) {
+				Map<Long, Pending<T>> single = Map.of(entry.getKey(), entry.getValue());
+				try {
+					Map<CompletableFuture<T>, RuntimeException> rejected = new HashMap<>();
+					complete(single, transactionTemplate.execute(status -> apply(single, rejected)), rejected);
+				} catch (RuntimeException rowFailure) {
+					entry.getValue().futures.forEach(future -> future.completeExceptionally(rowFailure));
+				}
+			}
+		}
+	}
+
+	private Map<Long, T> apply(Map<Long, Pending<T>> batch, Map<CompletableFuture<T>, RuntimeException> rejected) {
+		List<T> entities = new ArrayList<>(batch.size());
+		for (T entity : repository.findAllById(batch.keySet())) {
+			Pending<T> entry = batch.get(idOf.apply(entity));
+			for (int i = 0; i < entry.changes.size(); i++) {
+				try {
+					entry.changes.get(i).accept(entity);
+				} catch (RuntimeException e) {
+					rejected.put(entry.futures.get(i), e);
+				}
+			}
+			entities.add(entity);
+		}
+		Map<Long, T> saved = new HashMap<>(entities.size() * 2);
+		for (T entity : repository.saveAll(entities)) {
+			saved.put(idOf.apply(entity), entity);
+		}
+		return saved;
+	}
+
+	private void complete(Map<Long, Pending<T>> batch, Map<Long, T> saved,
+			Map<CompletableFuture<T>, RuntimeException> rejected) {
+		batch.forEach((id, entry) -> {
+			T entity = saved.get(id);
+			for (CompletableFuture<T> future : entry.futures) {
+				if (rejected.containsKey(future)) {
+					future.completeExceptionally(rejected.get(future));
+				} else if (entity == null) {
+					future.completeExceptionally(new NoSuchElementException("No " + name + " with id " + id));
+				} else {
+					future.complete(entity);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void destroy() throws InterruptedException {
+		synchronized (this) {
+			closed = true;
+		}
+		flusher.shutdown();
+		flusher.awaitTermination(window.toMillis() + 30_000, TimeUnit.MILLISECONDS);
+		flush();
+	}
+
+	private static final class Pending<T> {
+		final List<Consumer<T>> changes = new ArrayList<>();
+		final List<CompletableFuture<T>> futures = new ArrayList<>();
+	}
+}
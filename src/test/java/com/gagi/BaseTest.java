@@ -1,5 +1,9 @@
 package com.gagi;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,6 +12,8 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import jakarta.persistence.EntityManagerFactory;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @AutoConfigureWebClient
 @DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -15,5 +21,19 @@ public abstract class BaseTest {
 
 	@Autowired
 	WebTestClient testClient;
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * Runs the request and fails if the server issued more than {@code budget}
+	 * SQL statements while handling it, which is how N+1 selects show up.
+	 */
+	void assertStatementBudget(int budget, Runnable request) {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		long before = statistics.getPrepareStatementCount();
+		request.run();
+		long issued = statistics.getPrepareStatementCount() - before;
+		assertTrue(issued <= budget, () -> "Expected at most " + budget + " statements, " + issued + " were issued");
+	}
 
 }
@@ -3,21 +3,46 @@ package com.gagi;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.TestPropertySource;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.gagi.changes.ChangeEvent;
+import com.gagi.controller.CursorPage;
+import com.gagi.controller.MemberChanges;
 import com.gagi.domain.Project;
+import com.gagi.domain.ProjectSummary;
 import com.gagi.domain.User;
+import com.gagi.search.ProjectSearchHit;
 
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
 public class ProjectControllerTest extends BaseTest {
 
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
 	@Test
 	public void shouldCreateProjectAndThenRetrieveTheSameProject() {
 		Project project = new Project("project one", "a simple project");
@@ -32,6 +57,32 @@ public class ProjectControllerTest extends BaseTest {
 		assertEquals(project, retrieved);
 	}
 	
+	@Test
+	public void shouldEncodeProjectsAsCborOrSmileWhenAsked() throws Exception {
+		Project created = testClient.post().uri("/projects").bodyValue(new Project("binary", "encoded in cbor and smile"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		for (String name : Arrays.asList("first", "second")) {
+			User user = testClient.post().uri("/users").bodyValue(new User(name, name + "@binary.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			testClient.put().uri("/projects/assign/{projectId}/{userId}", created.getId(), user.getId())
+			.exchange().expectStatus().is2xxSuccessful();
+		}
+		
+		byte[] json = testClient.get().uri("/projects/{projectId}?include=users", created.getId()).accept(MediaType.APPLICATION_JSON)
+		.exchange().expectStatus().isOk().expectBody().returnResult().getResponseBody();
+		byte[] cbor = testClient.get().uri("/projects/{projectId}?include=users", created.getId()).accept(MediaType.APPLICATION_CBOR)
+		.exchange().expectStatus().isOk().expectHeader().contentType(MediaType.APPLICATION_CBOR)
+		.expectBody().returnResult().getResponseBody();
+		byte[] smile = testClient.get().uri("/projects/{projectId}?include=users", created.getId()).accept(SMILE)
+		.exchange().expectStatus().isOk().expectHeader().contentType(SMILE)
+		.expectBody().returnResult().getResponseBody();
+		
+		JsonNode expected = new ObjectMapper().readTree(json);
+		assertEquals(expected, new ObjectMapper(new CBORFactory()).readTree(cbor));
+		assertEquals(expected, new ObjectMapper(new SmileFactory()).readTree(smile));
+		assertTrue(cbor.length < json.length && smile.length < json.length);
+	}
+	
 	@Test
 	public void shouldSearchProjectByName() {
 		Project project = new Project("project_name", "a simple project");
@@ -68,7 +119,7 @@ public class ProjectControllerTest extends BaseTest {
 		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectWithId.getId(), otherUserWithId.getId())
 		.exchange().expectStatus().is2xxSuccessful();
 		
-		Project retrieved = testClient.get().uri("/projects/{id}", projectWithId.getId())
+		Project retrieved = testClient.get().uri("/projects/{id}?include=users", projectWithId.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
 
 		assertNotNull(retrieved);
@@ -79,6 +130,122 @@ public class ProjectControllerTest extends BaseTest {
 		assertEquals("Project description", retrieved.getDescription());
 	}
 	
+	@Test
+	public void shouldPageThroughMembersWithoutReturningThemWithTheProject() {
+		Project project = new Project("Paged members", "project with members read page by page");
+		Project projectWithId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		Project other = new Project("Other paged", "second project of the first member");
+		Project otherWithId = testClient.post().uri("/projects").body(Mono.just(other), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		
+		List<User> members = new ArrayList<>();
+		for (String name : Arrays.asList("one", "two", "three")) {
+			User user = new User(name, name + "@paged.com");
+			members.add(testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody());
+		}
+		MemberChanges add = new MemberChanges(members.stream().map(User::getId).toList(), null);
+		testClient.put().uri("/projects/{projectId}/members", projectWithId.getId()).bodyValue(add)
+		.exchange().expectStatus().isOk();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", otherWithId.getId(), members.get(0).getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		testClient.get().uri("/projects/{projectId}", projectWithId.getId())
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$.name").isEqualTo("Paged members").jsonPath("$.users").doesNotExist();
+		
+		CursorPage<User> page = testClient.get().uri("/projects/{projectId}/users?size=2", projectWithId.getId())
+				.exchange().expectStatus().isOk()
+				.expectBody(new ParameterizedTypeReference<CursorPage<User>>() {}).returnResult().getResponseBody();
+		assertEquals(members.subList(0, 2), page.content());
+		page = testClient.get().uri("/projects/{projectId}/users?size=2&cursor={cursor}", projectWithId.getId(), page.nextCursor())
+				.exchange().expectStatus().isOk()
+				.expectBody(new ParameterizedTypeReference<CursorPage<User>>() {}).returnResult().getResponseBody();
+		assertEquals(members.subList(2, 3), page.content());
+		assertNull(page.nextCursor());
+		
+		CursorPage<ProjectSummary> projects = testClient.get().uri("/users/{userId}/projects", members.get(0).getId())
+				.exchange().expectStatus().isOk()
+				.expectBody(new ParameterizedTypeReference<CursorPage<ProjectSummary>>() {}).returnResult().getResponseBody();
+		assertEquals(List.of(ProjectSummary.of(projectWithId), ProjectSummary.of(otherWithId)), projects.content());
+		
+		testClient.get().uri("/projects/{projectId}/users", Long.MAX_VALUE)
+		.exchange().expectStatus().isNotFound();
+		testClient.get().uri("/users/{userId}/projects", Long.MAX_VALUE)
+		.exchange().expectStatus().isNotFound();
+	}
+	
+	@Test
+	public void projectReadsShouldStayWithinTheirStatementBudget() {
+		List<Long> userIds = new ArrayList<>();
+		for (String name : Arrays.asList("one", "two", "three")) {
+			User user = new User(name, name + "@budget.com");
+			userIds.add(testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody().getId());
+		}
+		List<Long> projectIds = new ArrayList<>();
+		for (String name : Arrays.asList("first budget", "second budget", "third budget")) {
+			Project project = new Project(name, "project with three members");
+			Long projectId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody().getId();
+			testClient.put().uri("/projects/{projectId}/members", projectId).bodyValue(new MemberChanges(userIds, null))
+			.exchange().expectStatus().isOk();
+			projectIds.add(projectId);
+		}
+		
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/{projectId}?include=users", projectIds.get(0))
+				.exchange().expectStatus().isOk().expectBody().jsonPath("$.users.length()").isEqualTo(3));
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/findbyname/{name}?include=users", "second budget")
+				.exchange().expectStatus().isOk().expectBody().jsonPath("$.users.length()").isEqualTo(3));
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/{projectId}", projectIds.get(0))
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/{projectId}/users", projectIds.get(0))
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(1, () -> testClient.get().uri("/projects")
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(2, () -> testClient.get().uri("/projects/export").accept(MediaType.APPLICATION_NDJSON)
+				.exchange().expectStatus().isOk().returnResult(Project.class).getResponseBody().collectList().block());
+	}
+	
+	@Test
+	public void membershipChangesShouldInvalidateTheProjectETag() {
+		User user = new User("Etag user", "etag@email.com");
+		User userWithId = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		Project project = new Project("Etag project", "Project polled by a dashboard");
+		Project projectWithId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		
+		String eTag = testClient.get().uri("/projects/{id}", projectWithId.getId())
+				.exchange().expectStatus().isOk()
+				.returnResult(Project.class).getResponseHeaders().getETag();
+		testClient.get().uri("/projects/{id}", projectWithId.getId()).ifNoneMatch(eTag)
+		.exchange().expectStatus().isNotModified();
+		
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectWithId.getId(), userWithId.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		Project retrieved = testClient.get().uri("/projects/{id}?include=users", projectWithId.getId()).ifNoneMatch(eTag)
+				.exchange().expectStatus().isOk()
+				.expectBody(Project.class).returnResult().getResponseBody();
+		assertEquals(List.of(userWithId), retrieved.getUsers());
+	}
+	
+	@Test
+	public void projectListingShouldSupportConditionalRequests() {
+		Project project = new Project("listed", "listed project");
+		testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated();
+		
+		String eTag = testClient.get().uri("/projects")
+				.exchange().expectStatus().isOk()
+				.returnResult(String.class).getResponseHeaders().getETag();
+		assertNotNull(eTag);
+		testClient.get().uri("/projects").ifNoneMatch(eTag)
+		.exchange().expectStatus().isNotModified();
+	}
+	
 	@Test
 	public void shouldAssignUserToProject() {
 		User user = new User("Assignable user", "assignable@email.com");
@@ -94,12 +261,114 @@ public class ProjectControllerTest extends BaseTest {
 		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectWithId.getId(), userWithId.getId())
 		.exchange().expectStatus().is2xxSuccessful();
 		
-		Project retrieved = testClient.get().uri("/projects/{id}", projectWithId.getId())
+		Project retrieved = testClient.get().uri("/projects/{id}?include=users", projectWithId.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
 		
 		assertTrue(retrieved.getUsers().contains(userWithId));
 	}
 	
+	@Test
+	public void membershipChangesShouldOnlyInvalidateTheChangedProject() {
+		User user = testClient.post().uri("/users").bodyValue(new User("cached member", "cached@membership.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		Project changed = testClient.post().uri("/projects").bodyValue(new Project("changed", "gets a member"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		Project untouched = testClient.post().uri("/projects").bodyValue(new Project("untouched", "stays cached"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		testClient.get().uri("/projects/{projectId}", untouched.getId()).exchange().expectStatus().isOk();
+		
+		String eTag = testClient.get().uri("/projects/{projectId}", changed.getId())
+		.exchange().expectStatus().isOk().returnResult(ProjectSummary.class).getResponseHeaders().getETag();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", changed.getId(), user.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		assertStatementBudget(0, () -> testClient.get().uri("/projects/{projectId}", untouched.getId())
+				.exchange().expectStatus().isOk());
+		testClient.get().uri("/projects/{projectId}", changed.getId()).ifNoneMatch(eTag)
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$.name").isEqualTo("changed");
+	}
+	
+	@Test
+	public void shouldLookUpMembershipByProjectAndUser() {
+		User member = testClient.post().uri("/users").bodyValue(new User("joined", "joined@membership.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		User outsider = testClient.post().uri("/users").bodyValue(new User("outsider", "outsider@membership.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		Project project = testClient.post().uri("/projects").bodyValue(new Project("joined project", "with memberships"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", project.getId(), member.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/{projectId}/members/{userId}", project.getId(), member.getId())
+				.exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.projectId").isEqualTo(project.getId())
+				.jsonPath("$.userId").isEqualTo(member.getId())
+				.jsonPath("$.role").isEqualTo("MEMBER")
+				.jsonPath("$.joinedAt").isNotEmpty());
+		testClient.get().uri("/projects/{projectId}/members/{userId}", project.getId(), outsider.getId())
+		.exchange().expectStatus().isNotFound();
+		
+		testClient.get().uri("/users/{userId}/projects", member.getId())
+		.exchange().expectStatus().isOk().expectBody()
+		.jsonPath("$.content[0].id").isEqualTo(project.getId());
+	}
+	
+	@Test
+	public void shouldKeepMembershipsWhenTheProjectIsWritten() {
+		User member = testClient.post().uri("/users").bodyValue(new User("kept", "kept@membership.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		User other = testClient.post().uri("/users").bodyValue(new User("not given", "not-given@membership.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		Project given = new Project("kept project", "members only through the membership endpoints");
+		given.setUsers(List.of(other));
+		Project project = testClient.post().uri("/projects").bodyValue(given)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		assertTrue(project.getUsers().isEmpty());
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", project.getId(), member.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		String joinedAt = joinedAt(project.getId(), member.getId());
+		
+		testClient.get().uri("/data-api/projects/{projectId}/users", project.getId())
+		.exchange().expectStatus().isNotFound();
+		testClient.patch().uri("/data-api/projects/{projectId}", project.getId())
+		.bodyValue(Map.of("description", "renamed through data rest", "users", List.of()))
+		.exchange().expectStatus().is2xxSuccessful();
+		testClient.put().uri("/projects/{projectId}", project.getId()).bodyValue(new Project("kept project", "updated"))
+		.exchange().expectStatus().isOk();
+		
+		Project retrieved = testClient.get().uri("/projects/{projectId}?include=users", project.getId())
+		.exchange().expectStatus().isOk().expectBody(Project.class).returnResult().getResponseBody();
+		assertEquals(List.of(member), retrieved.getUsers());
+		assertEquals(joinedAt, joinedAt(project.getId(), member.getId()), "the membership row was not rewritten");
+		testClient.get().uri("/projects/stats?ids={projectId}", project.getId())
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$[0].memberCount").isEqualTo(1);
+		
+		testClient.delete().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().isNoContent();
+		testClient.get().uri("/projects/{projectId}/members/{userId}", project.getId(), member.getId())
+		.exchange().expectStatus().isNotFound();
+	}
+	
+	@Test
+	public void shouldIgnoreAMemberCountSentByTheClient() {
+		testClient.post().uri("/projects").contentType(MediaType.APPLICATION_JSON)
+		.bodyValue("{\"name\":\"forged count\",\"description\":\"no members\",\"memberCount\":5000}")
+		.exchange().expectStatus().isCreated().expectBody().jsonPath("$.memberCount").isEqualTo(0);
+		Project project = testClient.get().uri("/projects/findbyname/{name}?include=users", "forged count")
+		.exchange().expectStatus().isOk().expectBody(Project.class).returnResult().getResponseBody();
+		
+		testClient.patch().uri("/data-api/projects/{projectId}", project.getId())
+		.bodyValue(Map.of("memberCount", 5000)).exchange().expectStatus().is2xxSuccessful();
+		testClient.get().uri("/projects/stats?ids={projectId}", project.getId())
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$[0].memberCount").isEqualTo(0);
+	}
+	
+	private String joinedAt(Long projectId, Long userId) {
+		String[] joinedAt = new String[1];
+		testClient.get().uri("/projects/{projectId}/members/{userId}", projectId, userId)
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$.joinedAt").value(value -> joinedAt[0] = String.valueOf(value));
+		return joinedAt[0];
+	}
+	
 	@Test
 	public void projectListingShouldShowProjectsWithoutUsersAssignedToThem() {
 		Project project = new Project("projectname", "project description");
@@ -113,7 +382,7 @@ public class ProjectControllerTest extends BaseTest {
 		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectWithId.getId(), userWithId.getId())
 		.exchange().expectStatus().is2xxSuccessful();
 
-		Project projectWithUser = testClient.get().uri("/projects/{projectId}", projectWithId.getId())
+		Project projectWithUser = testClient.get().uri("/projects/{projectId}?include=users", projectWithId.getId())
 				.exchange().expectStatus().is2xxSuccessful().expectBody(Project.class).returnResult().getResponseBody();
 		assertFalse(projectWithUser.getUsers().isEmpty());
 		
@@ -126,6 +395,30 @@ public class ProjectControllerTest extends BaseTest {
 		assertTrue(retrieved.get(0).getUsers().isEmpty());
 	}
 	
+	@Test
+	public void projectListingShouldOnlyContainRequestedFields() {
+		Project project = new Project("narrow", "not selected");
+		testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated();
+		
+		testClient.get().uri("/projects?fields=name")
+		.exchange().expectStatus().is2xxSuccessful()
+		.expectBody()
+		.jsonPath("$[0].id").isNumber()
+		.jsonPath("$[0].name").isEqualTo("narrow")
+		.jsonPath("$[0].description").doesNotExist()
+		.jsonPath("$[0].users").doesNotExist();
+		
+		testClient.get().uri("/projects/cursor?fields=description")
+		.exchange().expectStatus().is2xxSuccessful()
+		.expectBody()
+		.jsonPath("$.content[0].description").isEqualTo("not selected")
+		.jsonPath("$.content[0].name").doesNotExist();
+		
+		testClient.get().uri("/projects/0/10?fields=users")
+		.exchange().expectStatus().isBadRequest();
+	}
+	
 	@Test
 	public void shouldTestPaginationOfProjectListing() {
 		List<String> projectnames = Arrays.asList("One", "Two", "Three", "Four", "Five", "Six", "Seven", "Eight", "Nine", "Ten", "Eleven", "Twelve");
@@ -154,6 +447,142 @@ public class ProjectControllerTest extends BaseTest {
 				.exchange().expectStatus().is2xxSuccessful()
 				.expectBodyList(Project.class).returnResult().getResponseBody();
 		assertEquals(0, retrieved.size());
+		
+		testClient.get().uri("/projects/0/401")
+		.exchange().expectStatus().isBadRequest()
+		.expectBody().jsonPath("$.code").isEqualTo("INVALID_ARGUMENT");
+	}
+	
+	@Test
+	public void shouldWalkProjectListingWithCursor() {
+		List<String> projectnames = Arrays.asList("One", "Two", "Three", "Four", "Five", "Six", "Seven", "Eight", "Nine", "Ten", "Eleven", "Twelve");
+		for(String projectname : projectnames) {
+			Project project = new Project(projectname, projectname + " description");
+			testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+			.exchange().expectStatus().isCreated();
+		}
+		
+		CursorPage<Project> page = testClient.get().uri("/projects/cursor?size=5")
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(new ParameterizedTypeReference<CursorPage<Project>>() {}).returnResult().getResponseBody();
+		assertEquals(5, page.content().size());
+		assertEquals("One", page.content().get(0).getName());
+		assertNotNull(page.nextCursor());
+		
+		page = testClient.get().uri("/projects/cursor?size=5&after={after}", page.nextCursor())
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(new ParameterizedTypeReference<CursorPage<Project>>() {}).returnResult().getResponseBody();
+		assertEquals(5, page.content().size());
+		assertEquals("Six", page.content().get(0).getName());
+		
+		page = testClient.get().uri("/projects/cursor?size=5&after={after}", page.nextCursor())
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(new ParameterizedTypeReference<CursorPage<Project>>() {}).returnResult().getResponseBody();
+		assertEquals(2, page.content().size());
+		assertNull(page.nextCursor());
+		
+		testClient.get().uri("/projects/cursor?after=not-a-cursor")
+		.exchange().expectStatus().isBadRequest();
+	}
+	
+	@Test
+	public void shouldReadProjectsThroughTheReactiveEndpoints() {
+		User user = new User("Reactive user", "reactive@email.com");
+		User userWithId = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		
+		Project project = new Project("reactive project", "read without blocking");
+		Project projectWithId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectWithId.getId(), userWithId.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		Project retrieved = testClient.get().uri("/reactive/projects/{projectId}", projectWithId.getId())
+				.exchange().expectStatus().isOk()
+				.expectBody(Project.class).returnResult().getResponseBody();
+		assertEquals("reactive project", retrieved.getName());
+		assertEquals(List.of(userWithId), retrieved.getUsers());
+		
+		testClient.get().uri("/reactive/projects/findbyname/{name}", "reactive project")
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$.users[0].email").isEqualTo("reactive@email.com");
+		
+		testClient.get().uri("/reactive/projects/{projectId}", projectWithId.getId() + 1000)
+		.exchange().expectStatus().isNotFound();
+		
+		testClient.get().uri("/reactive/projects")
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$[0].name").isEqualTo("reactive project").jsonPath("$[0].users").doesNotExist();
+	}
+	
+	@Test
+	public void shouldSearchProjectsByNameAndDescription() {
+		List<Project> projects = Arrays.asList(new Project("Billing", "invoices and payment reminders"),
+				new Project("Reporting", "monthly billing reports"), new Project("Onboarding", "welcome emails"));
+		List<Project> created = new ArrayList<>();
+		for (Project project : projects) {
+			created.add(testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody());
+		}
+		
+		List<ProjectSearchHit> hits = testClient.get().uri("/projects/search?q={q}", "billing")
+				.exchange().expectStatus().isOk()
+				.expectBodyList(ProjectSearchHit.class).returnResult().getResponseBody();
+		assertEquals(List.of("Billing", "Reporting"), hits.stream().map(ProjectSearchHit::name).toList());
+		assertTrue(hits.get(0).score() > hits.get(1).score());
+		
+		testClient.get().uri("/projects/search?q={q}&page=1&size=1", "billing")
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].name").isEqualTo("Reporting");
+		testClient.get().uri("/projects/search?q={q}&page=1000&size=1", "billing")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(ProjectSearchHit.class).hasSize(0);
+		//the end of the page does not fit the number of hits Lucene can collect
+		testClient.get().uri("/projects/search?q={q}&page={page}&size=400", "billing", Integer.MAX_VALUE)
+		.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("INVALID_ARGUMENT");
+		
+		Project onboarding = created.get(2);
+		onboarding.setDescription("welcome emails with billing details");
+		testClient.put().uri("/projects/{projectId}", onboarding.getId()).body(Mono.just(onboarding), Project.class)
+		.exchange().expectStatus().isOk();
+		testClient.delete().uri("/projects/{projectId}", created.get(0).getId())
+		.exchange().expectStatus().isNoContent();
+		
+		testClient.get().uri("/projects/search?q={q}", "billing")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(ProjectSearchHit.class).hasSize(2);
+		testClient.get().uri("/projects/search?q={q}", "name:billing")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(ProjectSearchHit.class).hasSize(0);
+		testClient.get().uri("/projects/search?q={q}", "billing AND")
+		.exchange().expectStatus().isBadRequest();
+	}
+	
+	@Test
+	public void shouldExportAllProjectsWithTheirUsersAsNdjson() {
+		User user = new User("Exported user", "exported@email.com");
+		User userWithId = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		
+		Project one = new Project("exported one", "first exported project");
+		Project oneWithId = testClient.post().uri("/projects").body(Mono.just(one), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		Project other = new Project("exported other", "second exported project");
+		testClient.post().uri("/projects").body(Mono.just(other), Project.class)
+		.exchange().expectStatus().isCreated();
+		
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", oneWithId.getId(), userWithId.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		List<Project> exported = testClient.get().uri("/projects/export").accept(MediaType.APPLICATION_NDJSON)
+				.exchange().expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(Project.class).getResponseBody().collectList().block();
+		
+		assertEquals(2, exported.size());
+		assertEquals("exported one", exported.get(0).getName());
+		assertEquals(List.of(userWithId), exported.get(0).getUsers());
+		assertTrue(exported.get(1).getUsers().isEmpty());
 	}
 	
 	@Test
@@ -217,9 +646,9 @@ public class ProjectControllerTest extends BaseTest {
 
 		List<User> expectedUsers = Arrays.asList(oneUserCreated, otherUserCreated);
 		
-		Project first = testClient.get().uri("/projects/{projectId}", oneProjectCreated.getId())
+		Project first = testClient.get().uri("/projects/{projectId}?include=users", oneProjectCreated.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
-		Project second = testClient.get().uri("/projects/{projectId}", otherProjectCreated.getId())
+		Project second = testClient.get().uri("/projects/{projectId}?include=users", otherProjectCreated.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
 
 		assertNotNull(first);
@@ -254,7 +683,7 @@ public class ProjectControllerTest extends BaseTest {
 
 		List<User> expectedUsers = Arrays.asList(oneUserCreated, otherUserCreated);
 		
-		Project first = testClient.get().uri("/projects/{projectId}", oneProjectCreated.getId())
+		Project first = testClient.get().uri("/projects/{projectId}?include=users", oneProjectCreated.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
 
 		assertNotNull(first);
@@ -266,7 +695,7 @@ public class ProjectControllerTest extends BaseTest {
 		testClient.put().uri("/projects/remove/{projectId}/{userId}", oneProjectCreated.getId(), oneUserCreated.getId())
 		.exchange().expectStatus().is2xxSuccessful();
 		
-		first = testClient.get().uri("/projects/{projectId}", oneProjectCreated.getId())
+		first = testClient.get().uri("/projects/{projectId}?include=users", oneProjectCreated.getId())
 				.exchange().expectBody(Project.class).returnResult().getResponseBody();
 		
 		assertNotNull(first);
@@ -275,6 +704,154 @@ public class ProjectControllerTest extends BaseTest {
 
 	}
 	
+	@Test
+	public void shouldAddAndRemoveMembersInBulk() {
+		Project project = new Project("bulk members", "project with many members");
+		Project projectWithId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		
+		List<User> created = new ArrayList<>();
+		for (String name : Arrays.asList("one", "two", "three")) {
+			User user = new User(name, name + "@members.com");
+			created.add(testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody());
+		}
+		
+		MemberChanges add = new MemberChanges(created.stream().map(User::getId).toList(), null);
+		MemberChanges.Result result = testClient.put().uri("/projects/{projectId}/members", projectWithId.getId()).bodyValue(add)
+		.exchange().expectStatus().isOk().expectBody(MemberChanges.Result.class).returnResult().getResponseBody();
+		assertEquals(new MemberChanges.Result(3, 0), result);
+		
+		//already a member and unknown user ids are not written
+		MemberChanges change = new MemberChanges(List.of(created.get(0).getId(), Long.MAX_VALUE), List.of(created.get(1).getId()));
+		result = testClient.put().uri("/projects/{projectId}/members", projectWithId.getId()).bodyValue(change)
+		.exchange().expectStatus().isOk().expectBody(MemberChanges.Result.class).returnResult().getResponseBody();
+		assertEquals(new MemberChanges.Result(0, 1), result);
+		
+		Project retrieved = testClient.get().uri("/projects/{projectId}?include=users", projectWithId.getId())
+				.exchange().expectBody(Project.class).returnResult().getResponseBody();
+		assertEquals(2, retrieved.getUsers().size());
+		assertTrue(retrieved.getUsers().containsAll(List.of(created.get(0), created.get(2))));
+		
+		testClient.put().uri("/projects/{projectId}/members", Long.MAX_VALUE).bodyValue(add)
+		.exchange().expectStatus().isNotFound();
+	}
+	
+	@Test
+	public void shouldMaintainMemberCountsAndAggregateStats() {
+		List<Long> projectIds = new ArrayList<>();
+		for (String name : Arrays.asList("counted one", "counted two")) {
+			projectIds.add(testClient.post().uri("/projects").bodyValue(new Project(name, "counted"))
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody().getId());
+		}
+		List<Long> userIds = new ArrayList<>();
+		for (String name : Arrays.asList("a", "b", "c")) {
+			userIds.add(testClient.post().uri("/users").bodyValue(new User(name, name + "@counted.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody().getId());
+		}
+		
+		testClient.put().uri("/projects/{projectId}/members", projectIds.get(0)).bodyValue(new MemberChanges(userIds, null))
+		.exchange().expectStatus().isOk();
+		testClient.put().uri("/projects/remove/{projectId}/{userId}", projectIds.get(0), userIds.get(1))
+		.exchange().expectStatus().is2xxSuccessful();
+		for (int i = 0; i < 2; i++) {
+			testClient.put().uri("/projects/assign/{projectId}/{userId}", projectIds.get(1), userIds.get(0))
+			.exchange().expectStatus().is2xxSuccessful();
+		}
+		
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/stats?ids={one},{two},{missing}", projectIds.get(0), projectIds.get(1), Long.MAX_VALUE)
+				.exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].id").isEqualTo(projectIds.get(0)).jsonPath("$[0].memberCount").isEqualTo(2)
+				.jsonPath("$[1].id").isEqualTo(projectIds.get(1)).jsonPath("$[1].memberCount").isEqualTo(1));
+		assertStatementBudget(1, () -> testClient.get().uri("/projects/stats")
+				.exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.projects").isEqualTo(2).jsonPath("$.memberships").isEqualTo(3).jsonPath("$.largestProject").isEqualTo(2));
+	}
+	
+	@Test
+	public void shouldStreamChangesAndResumeAfterTheLastEventId() {
+		Project project = testClient.post().uri("/projects").bodyValue(new Project("watched", "streamed"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		User user = testClient.post().uri("/users").bodyValue(new User("watcher", "watcher@changes.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", project.getId(), user.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		testClient.put().uri("/projects/remove/{projectId}/{userId}", project.getId(), user.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		testClient.delete().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().is2xxSuccessful();
+		
+		List<ChangeEvent> events = changesAfter(0L);
+		assertEquals(List.of("create", "create", "assign", "update", "remove", "update", "delete"), events.stream().map(ChangeEvent::type).toList());
+		assertEquals(List.of("project", "user", "project", "project", "project", "project", "project"), events.stream().map(ChangeEvent::entity).toList());
+		ChangeEvent assigned = events.get(2);
+		assertEquals(project.getId(), assigned.entityId());
+		assertEquals(user.getId(), assigned.userId());
+		
+		assertEquals(events.subList(3, 7), changesAfter(assigned.id()));
+		
+		// an offset from before a restart is ahead of the feed
+		ChangeEvent reset = testClient.get().uri("/changes").header("Last-Event-ID", Long.toString(Long.MAX_VALUE))
+				.accept(MediaType.TEXT_EVENT_STREAM).exchange().expectStatus().isOk()
+				.returnResult(new ParameterizedTypeReference<ServerSentEvent<ChangeEvent>>() {}).getResponseBody()
+				.mapNotNull(ServerSentEvent::data).blockFirst(Duration.ofSeconds(10));
+		assertEquals(ChangeEvent.RESET, reset.type());
+		assertEquals(events.get(6).id(), reset.id());
+	}
+	
+	@Test
+	public void shouldStreamAnEventForEachMemberOfABulkChange() {
+		Project project = testClient.post().uri("/projects").bodyValue(new Project("watched in bulk", "streamed"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		List<Long> userIds = new ArrayList<>();
+		for (String name : Arrays.asList("first", "second", "third")) {
+			userIds.add(testClient.post().uri("/users").bodyValue(new User(name, name + "@bulk-changes.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody().getId());
+		}
+		testClient.put().uri("/projects/{projectId}/members", project.getId())
+		.bodyValue(new MemberChanges(List.of(userIds.get(0), userIds.get(1)), null))
+		.exchange().expectStatus().isOk();
+		//only the memberships actually written are announced
+		testClient.put().uri("/projects/{projectId}/members", project.getId())
+		.bodyValue(new MemberChanges(List.of(userIds.get(1), userIds.get(2), Long.MAX_VALUE), List.of(userIds.get(0), Long.MAX_VALUE)))
+		.exchange().expectStatus().isOk();
+		testClient.delete().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().is2xxSuccessful();
+		
+		List<String> memberships = changesAfter(0L).stream()
+				.filter(event -> event.type().equals(ChangeEvent.ASSIGN) || event.type().equals(ChangeEvent.REMOVE))
+				.map(event -> event.type() + " " + event.entityId() + " " + event.userId()).toList();
+		assertEquals(List.of("assign " + project.getId() + " " + userIds.get(0), "assign " + project.getId() + " " + userIds.get(1),
+				"assign " + project.getId() + " " + userIds.get(2), "remove " + project.getId() + " " + userIds.get(0)), memberships);
+	}
+	
+	/**
+	 * Reads the change feed from the offset up to the deletion of a project,
+	 * skipping keep-alive comments.
+	 */
+	private List<ChangeEvent> changesAfter(Long lastEventId) {
+		return testClient.get().uri("/changes").header("Last-Event-ID", lastEventId.toString())
+				.accept(MediaType.TEXT_EVENT_STREAM).exchange().expectStatus().isOk()
+				.returnResult(new ParameterizedTypeReference<ServerSentEvent<ChangeEvent>>() {}).getResponseBody()
+				.mapNotNull(ServerSentEvent::data)
+				.takeUntil(event -> event.type().equals("delete"))
+				.collectList().block(Duration.ofSeconds(10));
+	}
+	
+	@Test
+	public void shouldResolveManyProjectsInRequestOrder() {
+		Project first = testClient.post().uri("/projects").bodyValue(new Project("many first", "resolved together"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		Project second = testClient.post().uri("/projects").bodyValue(new Project("many second", "resolved together"))
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+		
+		testClient.get().uri("/projects?ids={second},{first},{missing}", second.getId(), first.getId(), Long.MAX_VALUE)
+		.exchange().expectStatus().isOk().expectBody()
+		.jsonPath("$[0].value.name").isEqualTo("many second")
+		.jsonPath("$[1].value.name").isEqualTo("many first")
+		.jsonPath("$[1].value.users").doesNotExist()
+		.jsonPath("$[2].id").isEqualTo(Long.MAX_VALUE).jsonPath("$[2].found").isEqualTo(false);
+	}
+	
 	@Test
 	public void shouldNotRemoveAssignedUsersWhenUpdatingProject() {
 		Project one = new Project("one project", "one project description");
@@ -290,7 +867,7 @@ public class ProjectControllerTest extends BaseTest {
 		testClient.put().uri("/projects/assign/{projectId}/{userId}", oneProjectCreated.getId(), oneUserCreated.getId())
 		.exchange().expectStatus().is2xxSuccessful();
 		
-		oneProjectCreated = testClient.get().uri("/projects/{projectId}", oneProjectCreated.getId())
+		oneProjectCreated = testClient.get().uri("/projects/{projectId}?include=users", oneProjectCreated.getId())
 				.exchange().expectStatus().is2xxSuccessful().expectBody(Project.class).returnResult().getResponseBody();
 		
 		assertNotNull(oneProjectCreated);
@@ -299,12 +876,88 @@ public class ProjectControllerTest extends BaseTest {
 		
 		Project update = new Project(oneProjectCreated.getName(), "updated description of this project");
 		
-		Project oneProjectUpdated = testClient.put().uri("/projects/{projectId}", oneProjectCreated.getId()).body(Mono.just(update), Project.class)
-		.exchange().expectStatus().is2xxSuccessful().expectBody(Project.class).returnResult().getResponseBody();
+		testClient.put().uri("/projects/{projectId}", oneProjectCreated.getId()).body(Mono.just(update), Project.class)
+		.exchange().expectStatus().is2xxSuccessful();
 		
+		Project oneProjectUpdated = testClient.get().uri("/projects/{projectId}?include=users", oneProjectCreated.getId())
+				.exchange().expectStatus().is2xxSuccessful().expectBody(Project.class).returnResult().getResponseBody();
 		assertNotNull(oneProjectUpdated);
-		assertNotNull(oneProjectUpdated.getUsers());
+		assertEquals("updated description of this project", oneProjectUpdated.getDescription());
 		assertTrue(oneProjectUpdated.getUsers().contains(oneUserCreated));
 
 	}
+	
+	@Nested
+	@TestPropertySource(properties = { "app.admission.expensive-read.rate=0.01", "app.admission.expensive-read.burst=2",
+			"app.admission.read.concurrency=2", "app.changes.keep-alive=PT0.1S" })
+	class WithAdmissionLimits extends BaseTest {
+		
+		@Test
+		public void shouldShedExpensiveReadsWhileCheapOnesPass() {
+			Project project = testClient.post().uri("/projects").bodyValue(new Project("admitted", "cheap to read"))
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+			
+			for (int i = 0; i < 2; i++) {
+				testClient.get().uri("/projects/0/10").exchange().expectStatus().isOk();
+			}
+			testClient.get().uri("/projects/findbyname/{name}", "admitted")
+			.exchange().expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+			.expectHeader().valueMatches(HttpHeaders.RETRY_AFTER, "\\d+")
+			.expectBody().jsonPath("$.code").isEqualTo("TOO_MANY_REQUESTS");
+			// spelled differently, still the same handler
+			for (String path : List.of("/projects/findbyname;x=1/admitted", "/projects/%66indbyname/admitted",
+					"/projects/cursor?size=400", "/projects/" + project.getId() + "/users")) {
+				testClient.get().uri(base -> URI.create(base.build() + path))
+				.exchange().expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+			}
+			
+			testClient.get().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().isOk();
+			testClient.get().uri("/actuator/health").exchange().expectStatus().isOk();
+		}
+		
+		@Test
+		public void shouldNotLetOpenChangeStreamsStarveReads() {
+			Project project = testClient.post().uri("/projects").bodyValue(new Project("streamed past", "read while listening"))
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+			
+			List<Disposable> listeners = new ArrayList<>();
+			try {
+				for (int i = 0; i < 3; i++) {
+					listeners.add(testClient.get().uri("/changes").accept(MediaType.TEXT_EVENT_STREAM)
+							.exchange().expectStatus().isOk().returnResult(String.class).getResponseBody().subscribe());
+				}
+				// more listeners than read slots, reads by id are still admitted
+				for (int i = 0; i < 3; i++) {
+					testClient.get().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().isOk();
+				}
+			} finally {
+				listeners.forEach(Disposable::dispose);
+			}
+		}
+	}
+	
+	@Nested
+	@TestPropertySource(properties = { "spring.mvc.async.request-timeout=500ms", "app.changes.keep-alive=PT0.1S" })
+	class WithShortAsyncTimeout extends BaseTest {
+		
+		@Test
+		public void shouldKeepChangeStreamsOpenPastTheAsyncTimeout() throws Exception {
+			Project project = testClient.post().uri("/projects").bodyValue(new Project("outlived", "deleted after the timeout"))
+			.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody();
+			
+			CompletableFuture<List<ChangeEvent>> events = testClient.get().uri("/changes").accept(MediaType.TEXT_EVENT_STREAM)
+					.exchange().expectStatus().isOk()
+					.returnResult(new ParameterizedTypeReference<ServerSentEvent<ChangeEvent>>() {}).getResponseBody()
+					.mapNotNull(ServerSentEvent::data)
+					.takeUntil(event -> event.type().equals(ChangeEvent.DELETE))
+					.collectList().toFuture();
+			Thread.sleep(1500);
+			testClient.delete().uri("/projects/{projectId}", project.getId()).exchange().expectStatus().is2xxSuccessful();
+			
+			List<ChangeEvent> received = events.get(10, TimeUnit.SECONDS);
+			assertEquals(1, received.size());
+			assertEquals(ChangeEvent.DELETE, received.get(0).type());
+			assertEquals(project.getId(), received.get(0).entityId());
+		}
+	}
 }
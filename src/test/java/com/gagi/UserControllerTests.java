@@ -1,23 +1,59 @@
 package com.gagi;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoublePredicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
 
+import com.gagi.changes.ChangeEvent;
+import com.gagi.controller.CursorPage;
+import com.gagi.controller.Lookup;
 import com.gagi.domain.Project;
 import com.gagi.domain.User;
+import com.gagi.service.BulkUserResult;
+import com.gagi.service.BulkUserResult.Status;
+import com.gagi.service.WriteBehindBuffer;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
 
+@AutoConfigureObservability(tracing = false)
 class UserControllerTests extends BaseTest {
 
 	@Test
@@ -63,6 +99,38 @@ class UserControllerTests extends BaseTest {
 		assertEquals(created, updated);
 	}
 	
+	@Test
+	public void shouldAnswerConditionalRequestsFromTheVersion() {
+		User user = new User("versioned", "versioned@e.com");
+		User created = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class)
+		.returnResult().getResponseBody();
+		
+		String eTag = testClient.get().uri("/users/{userId}", created.getId())
+		.exchange().expectStatus().isOk()
+		.returnResult(User.class).getResponseHeaders().getETag();
+		assertNotNull(eTag);
+		
+		testClient.get().uri("/users/{userId}", created.getId()).ifNoneMatch(eTag)
+		.exchange().expectStatus().isNotModified()
+		.expectBody().isEmpty();
+		
+		created.setName("stale write");
+		testClient.put().uri("/users/{userId}", created.getId()).header(HttpHeaders.IF_MATCH, "\"42\"").body(Mono.just(created), User.class)
+		.exchange().expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+		
+		created.setName("fresh write");
+		String newETag = testClient.put().uri("/users/{userId}", created.getId()).header(HttpHeaders.IF_MATCH, eTag).body(Mono.just(created), User.class)
+		.exchange().expectStatus().isOk()
+		.returnResult(User.class).getResponseHeaders().getETag();
+		assertNotEquals(eTag, newETag);
+		
+		testClient.get().uri("/users/{userId}", created.getId()).ifNoneMatch(eTag)
+		.exchange().expectStatus().isOk()
+		.expectHeader().valueEquals(HttpHeaders.ETAG, newETag)
+		.expectBody().jsonPath("$.name").isEqualTo("fresh write");
+	}
+	
 	@Test
 	public void shouldCreateAndThenDeleteUser() {
 		User user = new User("someusername", "tobechanged@e.com");
@@ -90,7 +158,140 @@ class UserControllerTests extends BaseTest {
 		.jsonPath("$.message").isNotEmpty()
 		.jsonPath("$.message").value((v) -> {
 			assertTrue(String.valueOf(v).contains("Email must be unique"));
+		})
+		.jsonPath("$.code").isEqualTo("USER_EMAIL_NOT_UNIQUE");
+	}
+	
+	@Test
+	public void shouldUpsertUserByEmailInOneStatement() {
+		testClient.get().uri("/users/findbyemail/{email}", "upsert@host.com")
+		.exchange().expectStatus().isOk().expectBody().isEmpty();
+		
+		User[] created = new User[1];
+		assertStatementBudget(1, () -> created[0] = testClient.put().uri("/users/by-email/{email}", "upsert@host.com")
+				.bodyValue(Map.of("name", "First"))
+				.exchange().expectStatus().isOk().expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+				.expectBody(User.class).returnResult().getResponseBody());
+		assertEquals("First", created[0].getName());
+		assertEquals("upsert@host.com", created[0].getEmail());
+		
+		testClient.get().uri("/users/{userId}", created[0].getId())
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$.name").isEqualTo("First");
+		testClient.put().uri("/users/by-email/{email}", "upsert@host.com").bodyValue(Map.of("name", "First"))
+		.exchange().expectStatus().isOk().expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"");
+		User renamed = testClient.put().uri("/users/by-email/{email}", "upsert@host.com").bodyValue(Map.of("name", "Second"))
+		.exchange().expectStatus().isOk().expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+		.expectBody(User.class).returnResult().getResponseBody();
+		assertEquals(created[0].getId(), renamed.getId());
+		
+		User cached = testClient.get().uri("/users/findbyemail/{email}", "upsert@host.com")
+		.exchange().expectStatus().isOk().expectBody(User.class).returnResult().getResponseBody();
+		assertEquals(renamed, cached);
+		testClient.get().uri("/users/{userId}", renamed.getId())
+		.exchange().expectStatus().isOk().expectBody().jsonPath("$.name").isEqualTo("Second");
+		User other = testClient.post().uri("/users").bodyValue(new User("Other", "other-upsert@host.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		assertNotEquals(renamed.getId(), other.getId());
+		
+		testClient.put().uri("/users/by-email/{email}", "not-an-email").bodyValue(Map.of("name", "Invalid"))
+		.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("VALIDATION_FAILED");
+		
+		testClient.delete().uri("/users/{userId}", renamed.getId()).exchange().expectStatus().is2xxSuccessful();
+		List<String> announced = testClient.get().uri("/changes").header("Last-Event-ID", "0")
+				.accept(MediaType.TEXT_EVENT_STREAM).exchange().expectStatus().isOk()
+				.returnResult(new ParameterizedTypeReference<ServerSentEvent<ChangeEvent>>() {}).getResponseBody()
+				.mapNotNull(ServerSentEvent::data)
+				.filter(event -> "user".equals(event.entity()) && renamed.getId().equals(event.entityId()))
+				.takeUntil(event -> event.type().equals("delete"))
+				.map(ChangeEvent::type).collectList().block(Duration.ofSeconds(10));
+		assertEquals(List.of("create", "update", "delete"), announced, "repeating the same upsert is not announced");
+	}
+	
+	@Test
+	public void shouldReplayCreateWithTheSameIdempotencyKey() {
+		User user = new User("Retried", "retried@host.com");
+		User first = testClient.post().uri("/users").header("Idempotency-Key", "create-retried").bodyValue(user)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		User retried = testClient.post().uri("/users").header("Idempotency-Key", "create-retried").bodyValue(user)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		assertEquals(first, retried);
+		
+		testClient.post().uri("/users").header("Idempotency-Key", "create-retried")
+		.bodyValue(new User("Someone else", "someone@host.com"))
+		.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("INVALID_ARGUMENT");
+		testClient.post().uri("/users").bodyValue(user)
+		.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("USER_EMAIL_NOT_UNIQUE");
+	}
+	
+	@Test
+	public void shouldResolveManyUsersInRequestOrderWithNotFoundMarkers() {
+		User first = testClient.post().uri("/users").bodyValue(new User("Many one", "many1@host.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		User second = testClient.post().uri("/users").bodyValue(new User("Many two", "many2@host.com"))
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		
+		assertStatementBudget(1, () -> testClient.get().uri("/users?ids={second},{missing},{first},{second}", second.getId(), Long.MAX_VALUE, first.getId(), second.getId())
+				.exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.length()").isEqualTo(4)
+				.jsonPath("$[0].id").isEqualTo(second.getId()).jsonPath("$[0].value.email").isEqualTo("many2@host.com")
+				.jsonPath("$[1].id").isEqualTo(Long.MAX_VALUE).jsonPath("$[1].found").isEqualTo(false)
+				.jsonPath("$[1].value").doesNotExist()
+				.jsonPath("$[2].found").isEqualTo(true).jsonPath("$[2].value.name").isEqualTo("Many one")
+				.jsonPath("$[3].value.id").isEqualTo(second.getId()));
+		
+		String tooMany = String.join(",", Collections.nCopies(201, "1"));
+		testClient.get().uri("/users?ids=" + tooMany)
+		.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("INVALID_ARGUMENT");
+	}
+	
+	@Test
+	public void repeatedLookupsShouldBeServedFromTheSecondLevelCache() {
+		User user = new User("cached", "cached@host.com");
+		User created = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		
+		for (int i = 0; i < 3; i++) {
+			testClient.get().uri("/users/{userId}", created.getId()).exchange().expectStatus().isOk();
+			testClient.get().uri("/users/findbyemail/{email}", "cached@host.com").exchange().expectStatus().isOk();
+		}
+		
+		testClient.get().uri("/cache/stats")
+		.exchange().expectStatus().isOk()
+		.expectBody()
+		.jsonPath("$[?(@.region == 'com.gagi.domain.User')].hits").value(hits -> {
+			assertEquals(1, ((List<?>) hits).size());
+			assertTrue(((Number) ((List<?>) hits).get(0)).longValue() >= 3);
+		})
+		.jsonPath("$[?(@.region == 'default-query-results-region')].hits").value(hits -> {
+			assertEquals(1, ((List<?>) hits).size());
+			assertTrue(((Number) ((List<?>) hits).get(0)).longValue() >= 2);
 		});
+		
+		created.setName("changed");
+		testClient.put().uri("/users/{userId}", created.getId()).body(Mono.just(created), User.class)
+		.exchange().expectStatus().is2xxSuccessful();
+		testClient.get().uri("/users/findbyemail/{email}", "cached@host.com")
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$.name").isEqualTo("changed");
+	}
+	
+	@Test
+	public void shouldExposeRequestRepositoryPoolAndCacheMetricsForPrometheus() {
+		User user = new User("metered", "metered@host.com");
+		User created = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		testClient.get().uri("/users/{userId}", created.getId()).exchange().expectStatus().isOk();
+		testClient.get().uri("/users/{userId}", created.getId()).exchange().expectStatus().isOk();
+		
+		String scrape = testClient.get().uri("/actuator/prometheus")
+				.exchange().expectStatus().isOk()
+				.expectBody(String.class).returnResult().getResponseBody();
+		
+		assertTrue(scrape.contains("http_server_requests_seconds_bucket{error=\"none\",exception=\"none\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/users/{userId}\""));
+		assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket{exception=\"None\",method=\"findById\",repository=\"UserRepository\""));
+		assertTrue(scrape.contains("hikaricp_connections_pending{"));
+		assertTrue(scrape.contains("hibernate_statements_total{"));
+		assertTrue(scrape.contains("hibernate_second_level_cache_requests_total{entityManagerFactory=\"entityManagerFactory\",region=\"com.gagi.domain.User\",result=\"hit\""));
 	}
 	
 	@Test
@@ -121,6 +322,36 @@ class UserControllerTests extends BaseTest {
 		
 	}
 	
+	@Test
+	public void shouldSearchUsersByNamePrefix() {
+		List<String> usernames = Arrays.asList("Alice Smith", "alina", "ALBERT", "Bob");
+		for(String username : usernames) {
+			User user = new User(username, username.replace(' ', '.') + "@host.com");
+			testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated();
+		}
+		
+		List<User> found = testClient.get().uri("/users/search?q={q}", "aL")
+				.exchange().expectStatus().isOk()
+				.expectBodyList(User.class).returnResult().getResponseBody();
+		assertEquals(List.of("ALBERT", "Alice Smith", "alina"), found.stream().map(User::getName).toList());
+		
+		testClient.get().uri("/users/search?q={q}&caseSensitive=true", "Al")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(User.class).hasSize(1);
+		testClient.get().uri("/users/search?q={q}", "%")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(User.class).hasSize(0);
+		
+		User albert = found.get(0);
+		albert.setName("Albrecht");
+		testClient.put().uri("/users/{userId}", albert.getId()).body(Mono.just(albert), User.class)
+		.exchange().expectStatus().isOk();
+		testClient.get().uri("/users/search?q={q}&size=1", "ALBR")
+		.exchange().expectStatus().isOk()
+		.expectBody().jsonPath("$[0].name").isEqualTo("Albrecht");
+	}
+	
 	@Test
 	public void shouldSearchExistingUserByEmail() {
 		User user = new User("by_name", "search_by_email@host.com");
@@ -167,6 +398,131 @@ class UserControllerTests extends BaseTest {
 		assertEquals(0, retrieved.size());
 	}
 	
+	@Test
+	public void shouldWalkUserListingWithCursor() {
+		List<String> usernames = Arrays.asList("One", "Two", "Three", "Four", "Five", "Six", "Seven");
+		for(String username : usernames) {
+			User user = new User(username, username + "@host.com");
+			testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated();
+		}
+		
+		CursorPage<User> page = testClient.get().uri("/users/cursor?size=4")
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(new ParameterizedTypeReference<CursorPage<User>>() {}).returnResult().getResponseBody();
+		assertEquals(4, page.content().size());
+		assertNotNull(page.nextCursor());
+		
+		page = testClient.get().uri("/users/cursor?size=4&after={after}", page.nextCursor())
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(new ParameterizedTypeReference<CursorPage<User>>() {}).returnResult().getResponseBody();
+		assertEquals(3, page.content().size());
+		assertEquals("Five", page.content().get(0).getName());
+		assertNull(page.nextCursor());
+		
+		for (String size : List.of("0", "-1", Integer.toString(Integer.MAX_VALUE))) {
+			testClient.get().uri("/users/cursor?size={size}", size)
+			.exchange().expectStatus().isBadRequest().expectBody().jsonPath("$.code").isEqualTo("INVALID_ARGUMENT");
+		}
+	}
+	
+	@Test
+	public void shouldReadUsersThroughTheReactiveEndpoints() {
+		List<String> usernames = Arrays.asList("One", "Two", "Three");
+		for(String username : usernames) {
+			User user = new User(username, username + "@host.com");
+			testClient.post().uri("/users").body(Mono.just(user), User.class)
+			.exchange().expectStatus().isCreated();
+		}
+		
+		User byEmail = testClient.get().uri("/reactive/users/findbyemail/{email}", "Two@host.com")
+				.exchange().expectStatus().isOk()
+				.expectBody(User.class).returnResult().getResponseBody();
+		assertEquals("Two", byEmail.getName());
+		
+		testClient.get().uri("/reactive/users/{userId}", byEmail.getId())
+		.exchange().expectStatus().isOk()
+		.expectBody(User.class).isEqualTo(byEmail);
+		
+		testClient.get().uri("/reactive/users/{userId}", byEmail.getId() + 1000)
+		.exchange().expectStatus().isNotFound();
+		
+		testClient.get().uri("/reactive/users/1/2")
+		.exchange().expectStatus().isOk()
+		.expectBodyList(User.class).hasSize(1);
+		
+		List<User> streamed = testClient.get().uri("/reactive/users/stream").accept(MediaType.APPLICATION_NDJSON)
+				.exchange().expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(User.class).getResponseBody().collectList().block();
+		assertEquals(usernames, streamed.stream().map(User::getName).toList());
+	}
+	
+	@Test
+	public void userReadsShouldStayWithinTheirStatementBudget() {
+		User user = new User("Budget", "budget@host.com");
+		User created = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		Project project = new Project("Budget project", "project of the budget user");
+		Long projectId = testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated().expectBody(Project.class).returnResult().getResponseBody().getId();
+		testClient.put().uri("/projects/assign/{projectId}/{userId}", projectId, created.getId())
+		.exchange().expectStatus().is2xxSuccessful();
+		
+		assertStatementBudget(1, () -> testClient.get().uri("/users/{userId}", created.getId())
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(1, () -> testClient.get().uri("/users/{userId}/projects", created.getId())
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(1, () -> testClient.get().uri("/users/cursor")
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(1, () -> testClient.get().uri("/users/search?q=bud")
+				.exchange().expectStatus().isOk());
+		assertStatementBudget(2, () -> testClient.get().uri("/users/0/10")
+				.exchange().expectStatus().isOk());
+	}
+	
+	@Test
+	public void shouldBulkImportUsersAndReportEveryRecord() {
+		User existing = new User("Existing", "existing@host.com");
+		testClient.post().uri("/users").body(Mono.just(existing), User.class)
+		.exchange().expectStatus().isCreated();
+		
+		List<User> users = Arrays.asList(new User("First", "first@host.com"), new User("Invalid", "invalid"),
+				new User("Again", "existing@host.com"), new User("Second", "second@host.com"), new User("Twice", "second@host.com"));
+		List<BulkUserResult> results = testClient.post().uri("/users/bulk").bodyValue(users)
+				.exchange().expectStatus().isOk()
+				.expectBodyList(BulkUserResult.class).returnResult().getResponseBody();
+		
+		assertEquals(5, results.size());
+		assertEquals(Status.CREATED, results.get(0).status());
+		assertNotNull(results.get(0).id());
+		assertEquals(Status.INVALID, results.get(1).status());
+		assertEquals(List.of("email must be a well-formed email address"), results.get(1).errors());
+		assertEquals(Status.DUPLICATE, results.get(2).status());
+		assertEquals(Status.CREATED, results.get(3).status());
+		assertEquals(Status.DUPLICATE, results.get(4).status());
+		
+		User retrieved = testClient.get().uri("/users/{userId}", results.get(3).id())
+				.exchange().expectStatus().is2xxSuccessful()
+				.expectBody(User.class).returnResult().getResponseBody();
+		assertEquals("second@host.com", retrieved.getEmail());
+	}
+	
+	@Test
+	public void shouldBulkImportUsersFromNdjson() {
+		String body = "{\"name\":\"One\",\"email\":\"one@host.com\"}\n{\"name\":\"Two\",\"email\":\"two@host.com\"}\n";
+		List<BulkUserResult> results = testClient.post().uri("/users/bulk").contentType(MediaType.APPLICATION_NDJSON).bodyValue(body)
+				.exchange().expectStatus().isOk()
+				.expectBodyList(BulkUserResult.class).returnResult().getResponseBody();
+		
+		assertEquals(2, results.size());
+		assertTrue(results.stream().allMatch(r -> r.status() == Status.CREATED));
+		
+		testClient.get().uri("/users/findbyemail/{email}", "two@host.com")
+		.exchange().expectStatus().is2xxSuccessful()
+		.expectBody().jsonPath("$.name").isEqualTo("Two");
+	}
+	
 	@Test
 	public void shouldEnforceValidityOfUserEmail() {
 		User user = new User("by_name", "email");
@@ -190,6 +546,273 @@ class UserControllerTests extends BaseTest {
 		.exchange().expectStatus().is2xxSuccessful();
 		
 		testClient.delete().uri("/users/{userId}", userWithId.getId())
-		.exchange().expectStatus().is4xxClientError();
+		.exchange().expectStatus().is4xxClientError()
+		.expectBody().jsonPath("$.code").isEqualTo("USER_IS_PROJECT_MEMBER");
+	}
+	
+	@Test
+	public void errorsShouldCarryCodesAndFieldViolationsWithoutSql() {
+		User invalid = new User("", "not an email");
+		testClient.post().uri("/users").body(Mono.just(invalid), User.class)
+		.exchange().expectStatus().isBadRequest()
+		.expectBody()
+		.jsonPath("$.code").isEqualTo("VALIDATION_FAILED")
+		.jsonPath("$.violations.length()").isEqualTo(2)
+		.jsonPath("$.message").value((v) -> {
+			assertTrue(String.valueOf(v).contains("email must be a well-formed email address"));
+			assertTrue(String.valueOf(v).contains("; "));
+		});
+		
+		User user = new User("first", "taken@host.com");
+		User created = testClient.post().uri("/users").body(Mono.just(user), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		User other = new User("second", "free@host.com");
+		User otherCreated = testClient.post().uri("/users").body(Mono.just(other), User.class)
+		.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+		otherCreated.setEmail("taken@host.com");
+		testClient.put().uri("/users/{userId}", otherCreated.getId()).body(Mono.just(otherCreated), User.class)
+		.exchange().expectStatus().isBadRequest()
+		.expectBody().jsonPath("$.code").isEqualTo("USER_EMAIL_NOT_UNIQUE").jsonPath("$.violations").doesNotExist();
+		created.setName("renamed");
+		testClient.put().uri("/users/{userId}", created.getId()).body(Mono.just(created), User.class)
+		.exchange().expectStatus().isOk();
+		
+		Project project = new Project("taken name", "first project with this name");
+		testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isCreated();
+		testClient.post().uri("/projects").body(Mono.just(project), Project.class)
+		.exchange().expectStatus().isBadRequest()
+		.expectBody()
+		.jsonPath("$.code").isEqualTo("PROJECT_NAME_NOT_UNIQUE")
+		.jsonPath("$.message").value((v) -> assertFalse(String.valueOf(v).toLowerCase().contains("insert")));
+	}
+	
+	@Nested
+	@TestPropertySource(properties = { "app.write-behind.enabled=true", "app.write-behind.window=PT1M" })
+	class WithWriteBehind extends BaseTest {
+		
+		@Autowired
+		WriteBehindBuffer<User> userWriteBehind;
+		
+		@Test
+		public void shouldCoalesceConcurrentPatchesIntoOneUpdate() throws Exception {
+			User created = testClient.post().uri("/users").bodyValue(new User("Burst", "burst@host.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			
+			List<Map<String, String>> patches = List.of(Map.of("name", "Coalesced"), Map.of("name", "Coalesced"),
+					Map.of("name", "Coalesced"), Map.of("email", "coalesced@host.com"));
+			List<Future<String>> etags = new ArrayList<>();
+			// one select, the duplicate probe for the new email and one update for all four
+			assertStatementBudget(3, () -> {
+				patchQueued(patches.stream().map(patch -> (Supplier<String>) () -> testClient.patch()
+						.uri("/users/{userId}", created.getId()).bodyValue(patch)
+						.exchange().expectStatus().isOk().returnResult(User.class).getResponseHeaders().getETag()).toList(), etags);
+				for (Future<String> etag : etags) {
+					assertEquals("\"1\"", assertDoesNotThrow(() -> etag.get()));
+				}
+			});
+			
+			User fromServer = testClient.get().uri("/users/{userId}", created.getId())
+			.exchange().expectStatus().isOk().expectBody(User.class).returnResult().getResponseBody();
+			assertEquals("Coalesced", fromServer.getName());
+			assertEquals("coalesced@host.com", fromServer.getEmail());
+		}
+		
+		@Test
+		public void shouldCheckEachQueuedPatchAgainstTheLoadedUser() throws Exception {
+			User first = testClient.post().uri("/users").bodyValue(new User("First", "first.queued@host.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			User second = testClient.post().uri("/users").bodyValue(new User("Second", "second.queued@host.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			
+			List<Future<String>> codes = new ArrayList<>();
+			patchQueued(List.of(
+					() -> status(first.getId(), Map.of("name", "Same email", "email", "first.queued@host.com")),
+					() -> status(first.getId(), Map.of("email", "taken.queued@host.com")),
+					() -> status(second.getId(), Map.of("email", "taken.queued@host.com")),
+					() -> status(second.getId(), Map.of("email", "invalid")),
+					() -> status(987654321L, Map.of("name", "Nobody"))), codes);
+			List<String> outcomes = new ArrayList<>();
+			for (Future<String> code : codes) {
+				outcomes.add(code.get());
+			}
+			
+			assertEquals("200", outcomes.get(0), "resending the current email is not a duplicate");
+			assertEquals("200", outcomes.get(1));
+			assertEquals("USER_EMAIL_NOT_UNIQUE", outcomes.get(2), "the batch is retried row by row, the second user loses");
+			assertEquals("VALIDATION_FAILED", outcomes.get(3));
+			assertEquals("404", outcomes.get(4));
+			assertEquals(1, testClient.get().uri("/users/findbyname/{name}", "Same email")
+					.exchange().expectStatus().isOk().expectBodyList(User.class).returnResult().getResponseBody().size());
+		}
+		
+		private String status(Long userId, Map<String, String> patch) {
+			EntityExchangeResult<Map<String, Object>> result = testClient.patch().uri("/users/{userId}", userId)
+					.bodyValue(patch).exchange().expectBody(new ParameterizedTypeReference<Map<String, Object>>() {})
+					.returnResult();
+			return result.getStatus() == HttpStatus.BAD_REQUEST ? String.valueOf(result.getResponseBody().get("code"))
+					: String.valueOf(result.getStatus().value());
+		}
+		
+		/**
+		 * Sends the patches in parallel, each once the one before it is queued so
+		 * they are applied in order, and writes them in one flush. The window is
+		 * long enough never to end on its own.
+		 */
+		private <R> void patchQueued(List<Supplier<R>> requests, List<Future<R>> results) {
+			ExecutorService clients = Executors.newFixedThreadPool(requests.size());
+			try {
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+				for (Supplier<R> request : requests) {
+					results.add(clients.submit(request::get));
+					while (userWriteBehind.queued() < results.size()) {
+						assertTrue(System.nanoTime() < deadline, "the patches were not queued");
+						assertDoesNotThrow(() -> Thread.sleep(10));
+					}
+				}
+				userWriteBehind.flush();
+			} finally {
+				clients.shutdown();
+			}
+		}
+	}
+	
+	@Nested
+	@TestPropertySource(properties = { "app.write-behind.enabled=true", "app.write-behind.window=PT1M",
+			"app.admission.write.concurrency=1" })
+	class WithAsyncAdmission extends BaseTest {
+		
+		@Autowired
+		WriteBehindBuffer<User> userWriteBehind;
+		
+		@Test
+		public void shouldHoldTheWriteSlotUntilAQueuedPatchCompletes() throws Exception {
+			User created = testClient.post().uri("/users").bodyValue(new User("Held", "held@host.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			
+			ExecutorService client = Executors.newSingleThreadExecutor();
+			try {
+				Future<?> patched = client.submit(() -> testClient.patch().uri("/users/{userId}", created.getId())
+						.bodyValue(Map.of("name", "Released")).exchange().expectStatus().isOk());
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+				while (userWriteBehind.queued() == 0) {
+					assertTrue(System.nanoTime() < deadline, "the patch was not queued");
+					Thread.sleep(10);
+				}
+				testClient.post().uri("/users").bodyValue(new User("Waiting", "waiting@host.com"))
+				.exchange().expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+				.expectBody().jsonPath("$.code").isEqualTo("OVERLOADED");
+				
+				userWriteBehind.flush();
+				patched.get(10, TimeUnit.SECONDS);
+			} finally {
+				client.shutdown();
+			}
+			// the slot is freed when the async request completes, just after the response went out
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			HttpStatus status;
+			do {
+				Thread.sleep(10);
+				status = HttpStatus.valueOf(testClient.post().uri("/users").bodyValue(new User("Admitted", "admitted@host.com"))
+						.exchange().returnResult(User.class).getStatus().value());
+			} while (status == HttpStatus.SERVICE_UNAVAILABLE && System.nanoTime() < deadline);
+			assertEquals(HttpStatus.CREATED, status);
+		}
+	}
+	
+	@Nested
+	@TestPropertySource(properties = { "app.datasource.replica.url=jdbc:h2:mem:replica", "app.datasource.replica.max-lag=PT3S",
+			"app.datasource.replica.check-interval=PT0.1S", "app.datasource.replica.sticky-for=PT1M" })
+	class WithReadReplica extends BaseTest {
+		
+		@Autowired
+		@Qualifier("primaryDataSource")
+		DataSource primary;
+		@Autowired
+		@Qualifier("replicaDataSource")
+		DataSource replica;
+		@Autowired
+		MeterRegistry meterRegistry;
+		
+		@Test
+		public void shouldReadFromTheReplicaUnlessStickyOrLagging() throws Exception {
+			testClient.post().uri("/users").bodyValue(new User("Replicated", "replicated@host.com"))
+			.exchange().expectStatus().isCreated();
+			replicate();
+			
+			FluxExchangeResult<User> fresh = testClient.post().uri("/users").bodyValue(new User("Fresh", "fresh@host.com"))
+			.exchange().expectStatus().isCreated().returnResult(User.class);
+			String sticky = fresh.getResponseCookies().getFirst("read-primary-until").getValue();
+			Long freshId = fresh.getResponseBody().blockFirst().getId();
+			assertEquals(1, namesFound("Replicated", null));
+			assertEquals(0, namesFound("Fresh", null), "the replica has not seen the write yet");
+			assertEquals(1, namesFound("Fresh", sticky), "the writer reads its own write from the primary");
+			assertEquals(List.of(false, true), List.of(looksUp(freshId, null), looksUp(freshId, sticky)),
+					"a sticky multi-get reads its own write from the primary");
+			
+			awaitLag(lag -> lag > 3);
+			assertEquals(1, namesFound("Fresh", null), "a lagging replica is skipped");
+		}
+		
+		@Test
+		public void shouldNotCacheWhatTheReplicaReturned() throws Exception {
+			User created = testClient.post().uri("/users").bodyValue(new User("Cached", "cached@host.com"))
+			.exchange().expectStatus().isCreated().expectBody(User.class).returnResult().getResponseBody();
+			replicate();
+			
+			String sticky = testClient.patch().uri("/users/{userId}", created.getId()).bodyValue(Map.of("name", "Renamed"))
+					.exchange().expectStatus().isOk().returnResult(User.class).getResponseCookies()
+					.getFirst("read-primary-until").getValue();
+			assertEquals("Cached", nameByEmail("cached@host.com", null), "the replica has not seen the write yet");
+			assertEquals("Renamed", nameByEmail("cached@host.com", sticky),
+					"the replica's answer was not cached for the writer to read");
+		}
+		
+		private String nameByEmail(String email, String sticky) {
+			return testClient.get().uri("/users/findbyemail/{email}", email)
+					.cookies(cookies -> { if (sticky != null) cookies.add("read-primary-until", sticky); })
+					.exchange().expectStatus().isOk().expectBody(User.class).returnResult().getResponseBody().getName();
+		}
+		
+		private boolean looksUp(Long id, String sticky) {
+			return testClient.get().uri("/users?ids={id}", id)
+					.cookies(cookies -> { if (sticky != null) cookies.add("read-primary-until", sticky); })
+					.exchange().expectStatus().isOk().expectBody(new ParameterizedTypeReference<List<Lookup<User>>>() {})
+					.returnResult().getResponseBody().get(0).found();
+		}
+		
+		private int namesFound(String name, String sticky) {
+			return testClient.get().uri("/users/findbyname/{name}", name)
+					.cookies(cookies -> { if (sticky != null) cookies.add("read-primary-until", sticky); })
+					.exchange().expectStatus().isOk().expectBodyList(User.class).returnResult().getResponseBody().size();
+		}
+		
+		/**
+		 * Stands in for replication: copies the primary, heartbeat included, over
+		 * the replica and waits until the replica is considered current.
+		 */
+		private void replicate() throws Exception {
+			List<String> script = new ArrayList<>();
+			try (Connection connection = primary.getConnection(); Statement statement = connection.createStatement();
+					ResultSet rows = statement.executeQuery("SCRIPT")) {
+				while (rows.next()) {
+					script.add(rows.getString(1));
+				}
+			}
+			try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+				statement.execute("DROP ALL OBJECTS");
+				for (String sql : script) {
+					statement.execute(sql);
+				}
+			}
+			awaitLag(lag -> lag < 1);
+		}
+		
+		private void awaitLag(DoublePredicate condition) throws InterruptedException {
+			for (int i = 0; i < 100 && !condition.test(meterRegistry.get("app.datasource.replica.lag").gauge().value()); i++) {
+				Thread.sleep(100);
+			}
+			assertTrue(condition.test(meterRegistry.get("app.datasource.replica.lag").gauge().value()));
+		}
 	}
 }